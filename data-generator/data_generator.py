@@ -7,6 +7,7 @@ import datetime
 import requests
 import pika
 import os
+import struct
 
 # Configuration
 API_BASE_URL = os.getenv("API_BASE_URL", "https://localhost")
@@ -19,6 +20,16 @@ RABBITMQ_PASS = os.getenv("RABBITMQ_PASS", "kalo")
 EXCHANGE_NAME = "device.measurements.exchange"
 ROUTING_KEY = "device.measurement"
 
+# Wire format: "json", "binary" (fixed 32-byte layout, see encode_binary) or "batch"
+# (envelopes of up to BATCH_SIZE binary measurements, one message per envelope)
+MESSAGE_FORMAT = os.getenv("MESSAGE_FORMAT", "json")
+BATCH_SIZE = int(os.getenv("BATCH_SIZE", 500))
+BINARY_CONTENT_TYPE = "application/x-device-measurement"
+BATCH_CONTENT_TYPE = "application/x-device-measurement-batch"
+# Device id (16 bytes), epoch microseconds (8), value (8), big-endian
+BINARY_LAYOUT = struct.Struct(">16sqd")
+EPOCH = datetime.datetime(1970, 1, 1)
+
 # Simulation Config
 REAL_TIME_INTERVAL = 1       # 1 seconds real time delay
 SIMULATED_TIME_STEP = 600    # 10 minutes simulated time step
@@ -66,6 +77,43 @@ class DeviceSimulator:
 
 
 
+def encode_binary(measurement):
+    """Encodes a measurement in the binary wire format understood by the monitoring service.
+
+    The naive timestamp is sent as microseconds since the epoch, read as UTC on the other side,
+    so it round-trips to the same local date-time as the ISO string of the JSON format.
+    """
+    timestamp = datetime.datetime.fromisoformat(measurement["timestamp"])
+    epoch_micros = (timestamp - EPOCH) // datetime.timedelta(microseconds=1)
+    return BINARY_LAYOUT.pack(uuid.UUID(measurement["deviceId"]).bytes, epoch_micros, measurement["measurementValue"])
+
+
+def encode_measurement(measurement):
+    """Returns (body, content_type) for the configured MESSAGE_FORMAT."""
+    if MESSAGE_FORMAT == "binary":
+        return encode_binary(measurement), BINARY_CONTENT_TYPE
+    return json.dumps(measurement), 'application/json'
+
+
+def encode_batches(measurements):
+    """Yields (body, content_type) envelopes of at most BATCH_SIZE measurements each."""
+    for start in range(0, len(measurements), BATCH_SIZE):
+        chunk = measurements[start:start + BATCH_SIZE]
+        yield b"".join(encode_binary(m) for m in chunk), BATCH_CONTENT_TYPE
+
+
+def publish(channel, body, content_type):
+    channel.basic_publish(
+        exchange=EXCHANGE_NAME,
+        routing_key=ROUTING_KEY,
+        body=body,
+        properties=pika.BasicProperties(
+            content_type=content_type,
+            delivery_mode=2, # persistent
+        )
+    )
+
+
 def get_devices_from_file():
     file_path = "./device_ids.txt"
     devices = []
@@ -96,7 +144,7 @@ def setup_rabbitmq():
     return pika.BlockingConnection(parameters)
 
 def main():
-    logger.info("Starting Data Generator...")
+    logger.info(f"Starting Data Generator ({MESSAGE_FORMAT} messages)...")
     
     # 1. Get Devices from file
     devices_data = get_devices_from_file()
@@ -126,25 +174,29 @@ def main():
     try:
         while True:
             logger.info(f"Generating measurements for time: {current_simulated_time}...")
-            for sim in simulators:
-                measurement = sim.generate_measurement(current_simulated_time)
-                
-                # Publish
+            if MESSAGE_FORMAT == "batch":
+                measurements = [sim.generate_measurement(current_simulated_time) for sim in simulators]
                 try:
-                    channel.basic_publish(
-                        exchange=EXCHANGE_NAME,
-                        routing_key=ROUTING_KEY,
-                        body=json.dumps(measurement),
-                        properties=pika.BasicProperties(
-                            content_type='application/json',
-                            delivery_mode=2, # persistent
-                        )
-                    )
-                    logger.info(f"Sent measurement for {sim.device_name}: {measurement['measurementValue']:.4f}")
+                    envelopes = 0
+                    for body, content_type in encode_batches(measurements):
+                        publish(channel, body, content_type)
+                        envelopes += 1
+                    logger.info(f"Sent {len(measurements)} measurements in {envelopes} envelope(s)")
                 except Exception as e:
-                    logger.error(f"Failed to send message: {e}")
-                    # Reconnect logic could go here
-            
+                    logger.error(f"Failed to send envelope: {e}")
+            else:
+                for sim in simulators:
+                    measurement = sim.generate_measurement(current_simulated_time)
+
+                    # Publish
+                    try:
+                        body, content_type = encode_measurement(measurement)
+                        publish(channel, body, content_type)
+                        logger.info(f"Sent measurement for {sim.device_name}: {measurement['measurementValue']:.4f}")
+                    except Exception as e:
+                        logger.error(f"Failed to send message: {e}")
+                        # Reconnect logic could go here
+
             # Advance simulated time
             current_simulated_time += datetime.timedelta(seconds=SIMULATED_TIME_STEP)
             
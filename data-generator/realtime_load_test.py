@@ -0,0 +1,181 @@
+"""
+Realtime consumption fan-out load test.
+
+Opens LOADTEST_CLIENTS STOMP connections to the monitoring websocket endpoint, each
+subscribed to the realtime consumption of up to LOADTEST_DEVICES devices, and counts the
+MESSAGE frames and the bytes received over WebSocket for each transport and payload format:
+
+    sockjs-json    SockJS endpoint (/ws/consumption, websocket transport), JSON payloads
+    native-json    plain WebSocket endpoint (/ws/consumption-native), JSON payloads
+    native-binary  plain WebSocket endpoint, 48-byte binary payloads
+
+Reports frames/sec and bytes/frame per mode. Measurements have to be flowing meanwhile,
+e.g. from data_generator.py or traffic_generator.py. Bytes are counted as the client
+receives them, before any permessage-deflate the server may negotiate with other clients
+(websocket-client does not offer it).
+
+Results are also appended to LOADTEST_OUTPUT (CSV) so runs can be compared side by side.
+"""
+import concurrent.futures
+import csv
+import json
+import logging
+import os
+import random
+import string
+import time
+
+import urllib3
+import websocket
+
+from traffic_generator import get_auth_token, get_devices
+
+urllib3.disable_warnings(urllib3.exceptions.InsecureRequestWarning)
+
+# Configuration
+WS_BASE_URL = os.getenv("WS_BASE_URL", "ws://localhost/monitoring")
+LOADTEST_MODES = os.getenv("LOADTEST_MODES", "sockjs-json,native-json,native-binary").split(",")
+LOADTEST_CLIENTS = int(os.getenv("LOADTEST_CLIENTS", "20"))
+LOADTEST_DEVICES = int(os.getenv("LOADTEST_DEVICES", "10"))
+LOADTEST_DURATION_S = float(os.getenv("LOADTEST_DURATION_S", "30"))
+LOADTEST_LABEL = os.getenv("LOADTEST_LABEL", "run")
+LOADTEST_OUTPUT = os.getenv("LOADTEST_OUTPUT", "realtime_load_test.csv")
+
+JSON_DESTINATION = "/exchange/amq.topic/consumption.{}"
+BINARY_DESTINATION = "/exchange/amq.topic/consumption.binary.{}"
+
+logging.basicConfig(
+    level=logging.INFO,
+    format='%(asctime)s - %(levelname)s - %(message)s'
+)
+logger = logging.getLogger(__name__)
+
+
+def stomp_frame(command, headers):
+    lines = [command] + [f"{k}:{v}" for k, v in headers.items()]
+    return "\n".join(lines) + "\n\n\0"
+
+
+class Connection:
+    """One STOMP session over either raw WebSocket or the SockJS websocket transport."""
+
+    def __init__(self, mode, token):
+        self.sockjs = mode.startswith("sockjs")
+        query = f"?token={token}"
+        if self.sockjs:
+            server = random.randint(0, 999)
+            session = "".join(random.choices(string.ascii_lowercase + string.digits, k=8))
+            url = f"{WS_BASE_URL}/ws/consumption/{server}/{session}/websocket{query}"
+        else:
+            url = f"{WS_BASE_URL}/ws/consumption-native{query}"
+        self.ws = websocket.create_connection(url, timeout=5, sslopt={"cert_reqs": 0})
+        if self.sockjs:
+            # SockJS open frame
+            self.ws.recv()
+
+    def send(self, frame):
+        if self.sockjs:
+            self.ws.send(json.dumps([frame]))
+        else:
+            self.ws.send(frame)
+
+    def recv(self):
+        """Returns the WebSocket message size and the STOMP frames it carries."""
+        _, data = self.ws.recv_data()
+        if not self.sockjs:
+            return len(data), [data]
+        text = data.decode("utf-8")
+        # "o" open, "h" heartbeat, 'a[...]' messages, 'c[...]' close
+        if text.startswith("a"):
+            return len(data), [frame.encode("utf-8") for frame in json.loads(text[1:])]
+        return len(data), []
+
+    def close(self):
+        try:
+            self.ws.close()
+        except Exception:
+            pass
+
+
+def client_loop(mode, token, device_ids, deadline):
+    frames = 0
+    received = 0
+    connection = Connection(mode, token)
+    try:
+        connection.send(stomp_frame("CONNECT", {"accept-version": "1.2", "host": "/", "heart-beat": "0,0"}))
+        destination = BINARY_DESTINATION if mode.endswith("binary") else JSON_DESTINATION
+        for i, device_id in enumerate(device_ids):
+            connection.send(stomp_frame("SUBSCRIBE", {"id": f"sub-{i}", "destination": destination.format(device_id)}))
+
+        while time.monotonic() < deadline:
+            try:
+                size, stomp_frames = connection.recv()
+            except websocket.WebSocketTimeoutException:
+                continue
+            messages = sum(1 for frame in stomp_frames if frame.startswith(b"MESSAGE"))
+            if messages:
+                frames += messages
+                received += size
+    finally:
+        connection.close()
+    return frames, received
+
+
+def run_mode(mode, token, device_ids):
+    deadline = time.monotonic() + LOADTEST_DURATION_S
+    with concurrent.futures.ThreadPoolExecutor(max_workers=LOADTEST_CLIENTS) as executor:
+        futures = [executor.submit(client_loop, mode, token, device_ids, deadline)
+                   for _ in range(LOADTEST_CLIENTS)]
+        results = []
+        errors = 0
+        for future in futures:
+            try:
+                results.append(future.result())
+            except Exception as e:
+                errors += 1
+                logger.error(f"[{mode}] client failed: {e}")
+
+    frames = sum(r[0] for r in results)
+    received = sum(r[1] for r in results)
+    return frames, received, errors
+
+
+def main():
+    token = get_auth_token()
+    if not token:
+        return
+
+    devices = get_devices(token)
+    device_ids = [d['id'] for d in devices][:LOADTEST_DEVICES]
+    if not device_ids:
+        logger.error("No devices to subscribe to")
+        return
+
+    rows = []
+    for mode in LOADTEST_MODES:
+        logger.info(f"[{mode}] {LOADTEST_CLIENTS} clients x {len(device_ids)} devices for {LOADTEST_DURATION_S}s")
+        frames, received, errors = run_mode(mode, token, device_ids)
+        row = {
+            "label": LOADTEST_LABEL,
+            "mode": mode,
+            "clients": LOADTEST_CLIENTS,
+            "devices": len(device_ids),
+            "frames": frames,
+            "errors": errors,
+            "frames_per_s": round(frames / LOADTEST_DURATION_S, 1),
+            "bytes_per_frame": round(received / frames, 1) if frames else 0.0,
+        }
+        rows.append(row)
+        logger.info(f"[{mode}] {row['frames_per_s']} frames/s, {row['bytes_per_frame']} bytes/frame, errors={errors}")
+
+    write_header = not os.path.exists(LOADTEST_OUTPUT)
+    with open(LOADTEST_OUTPUT, "a", newline="") as f:
+        writer = csv.DictWriter(f, fieldnames=list(rows[0].keys()))
+        if write_header:
+            writer.writeheader()
+        writer.writerows(rows)
+    logger.info(f"Results appended to {LOADTEST_OUTPUT}")
+
+
+if __name__ == "__main__":
+    main()
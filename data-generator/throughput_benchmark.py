@@ -0,0 +1,132 @@
+"""
+Concurrent request throughput benchmark.
+
+Fires GET requests at the monitoring daily consumption endpoint (through Traefik and the
+load balancer) from a fixed number of concurrent clients and reports requests per second
+and latency percentiles for each concurrency level.
+
+Run it once per threading mode and compare the two reports, e.g.
+
+    # before: one platform request thread per service
+    VIRTUAL_THREADS_ENABLED=false TOMCAT_THREADS_MAX=1 docker stack deploy ...
+    BENCH_LABEL=platform-1 python throughput_benchmark.py
+
+    # after: virtual threads (the default)
+    docker stack deploy ...
+    BENCH_LABEL=virtual python throughput_benchmark.py
+
+Results are also appended to BENCH_OUTPUT (CSV) so runs can be compared side by side.
+"""
+import concurrent.futures
+import csv
+import logging
+import os
+import statistics
+import time
+
+import requests
+import urllib3
+
+from traffic_generator import get_auth_token, get_devices
+
+urllib3.disable_warnings(urllib3.exceptions.InsecureRequestWarning)
+
+# Configuration
+API_BASE_URL = os.getenv("API_BASE_URL", "http://localhost")
+BENCH_PATH = os.getenv("BENCH_PATH", "/monitoring/energy-consumption/daily")
+BENCH_DATE = os.getenv("BENCH_DATE", "2024-12-14")
+BENCH_CONCURRENCY = [int(c) for c in os.getenv("BENCH_CONCURRENCY", "1,8,32,128").split(",")]
+BENCH_DURATION_S = float(os.getenv("BENCH_DURATION_S", "20"))
+BENCH_WARMUP_S = float(os.getenv("BENCH_WARMUP_S", "5"))
+BENCH_LABEL = os.getenv("BENCH_LABEL", "run")
+BENCH_OUTPUT = os.getenv("BENCH_OUTPUT", "throughput_benchmark.csv")
+
+logging.basicConfig(
+    level=logging.INFO,
+    format='%(asctime)s - %(levelname)s - %(message)s'
+)
+logger = logging.getLogger(__name__)
+
+
+def client_loop(session, url, headers, device_ids, worker, deadline):
+    # One closed-loop client: sends the next request as soon as the previous one returns
+    latencies = []
+    errors = 0
+    i = worker
+    while time.monotonic() < deadline:
+        params = {"deviceId": device_ids[i % len(device_ids)], "date": BENCH_DATE}
+        i += 1
+        start = time.perf_counter()
+        try:
+            response = session.get(url, params=params, headers=headers, verify=False, timeout=30)
+            if response.status_code >= 400:
+                errors += 1
+        except Exception:
+            errors += 1
+        latencies.append(time.perf_counter() - start)
+    return latencies, errors
+
+
+def run_level(url, headers, device_ids, concurrency, duration_s):
+    sessions = [requests.Session() for _ in range(concurrency)]
+    deadline = time.monotonic() + duration_s
+    with concurrent.futures.ThreadPoolExecutor(max_workers=concurrency) as executor:
+        futures = [executor.submit(client_loop, sessions[w], url, headers, device_ids, w, deadline)
+                   for w in range(concurrency)]
+        results = [f.result() for f in futures]
+
+    latencies = sorted(l for result in results for l in result[0])
+    errors = sum(result[1] for result in results)
+    return latencies, errors
+
+
+def percentile(sorted_values, p):
+    if not sorted_values:
+        return 0.0
+    index = min(len(sorted_values) - 1, max(0, int(round(p / 100.0 * len(sorted_values))) - 1))
+    return sorted_values[index]
+
+
+def main():
+    token = get_auth_token()
+    if not token:
+        return
+
+    devices = get_devices(token)
+    device_ids = [d['id'] for d in devices] or ["00000000-0000-0000-0000-000000000000"]
+    url = f"{API_BASE_URL}{BENCH_PATH}"
+    headers = {"Authorization": f"Bearer {token}"}
+
+    logger.info(f"Warming up for {BENCH_WARMUP_S}s against {url}")
+    run_level(url, headers, device_ids, max(BENCH_CONCURRENCY), BENCH_WARMUP_S)
+
+    rows = []
+    for concurrency in BENCH_CONCURRENCY:
+        latencies, errors = run_level(url, headers, device_ids, concurrency, BENCH_DURATION_S)
+        throughput = len(latencies) / BENCH_DURATION_S
+        row = {
+            "label": BENCH_LABEL,
+            "concurrency": concurrency,
+            "requests": len(latencies),
+            "errors": errors,
+            "throughput_rps": round(throughput, 1),
+            "mean_ms": round(statistics.mean(latencies) * 1000, 1) if latencies else 0.0,
+            "p50_ms": round(percentile(latencies, 50) * 1000, 1),
+            "p95_ms": round(percentile(latencies, 95) * 1000, 1),
+            "p99_ms": round(percentile(latencies, 99) * 1000, 1),
+        }
+        rows.append(row)
+        logger.info(f"[{BENCH_LABEL}] concurrency={concurrency} {row['throughput_rps']} req/s "
+                    f"p50={row['p50_ms']}ms p95={row['p95_ms']}ms p99={row['p99_ms']}ms errors={errors}")
+
+    write_header = not os.path.exists(BENCH_OUTPUT)
+    with open(BENCH_OUTPUT, "a", newline="") as f:
+        writer = csv.DictWriter(f, fieldnames=list(rows[0].keys()))
+        if write_header:
+            writer.writeheader()
+        writer.writerows(rows)
+    logger.info(f"Results appended to {BENCH_OUTPUT}")
+
+
+if __name__ == "__main__":
+    main()
@@ -1,8 +1,8 @@
 import { Client, type Message } from "@stomp/stompjs";
-import SockJS from "sockjs-client";
 import { tokenStorage } from "./tokenStorage";
 
-const WS_BASE_URL = import.meta.env.VITE_API_BASE_URL || "https://localhost";
+// Plain WebSocket endpoints: the session stays on one connection, so on one replica
+const WS_BASE_URL = (import.meta.env.VITE_API_BASE_URL || "https://localhost").replace(/^http/, "ws");
 
 export interface ChatWebSocketMessage {
   ticketId: string;
@@ -34,11 +34,10 @@ export class ChatWebSocketClient {
       }
 
       const token = tokenStorage.getToken();
-      const wsUrl = `${WS_BASE_URL}/ws/chat`;
-      const socket = new SockJS(wsUrl);
+      const wsUrl = `${WS_BASE_URL}/ws/chat-native`;
 
       this.client = new Client({
-        webSocketFactory: () => socket as any,
+        brokerURL: wsUrl,
         reconnectDelay: 5000,
         heartbeatIncoming: 4000,
         heartbeatOutgoing: 4000,
@@ -1,9 +1,9 @@
 import { Client, type Message } from "@stomp/stompjs";
-import SockJS from "sockjs-client";
 import type { RealtimeConsumption } from "./monitoringApi";
 import { tokenStorage } from "./tokenStorage";
 
-const WS_BASE_URL = import.meta.env.VITE_API_BASE_URL || "https://localhost";
+// Plain WebSocket endpoints: the session stays on one connection, so on one replica
+const WS_BASE_URL = (import.meta.env.VITE_API_BASE_URL || "https://localhost").replace(/^http/, "ws");
 
 export interface OverconsumptionNotification {
   deviceId: string;
@@ -40,15 +40,13 @@ export class MonitoringWebSocketClient {
     return new Promise((resolve, reject) => {
       const token = tokenStorage.getToken();
       const wsUrl = token
-        ? `${WS_BASE_URL}/monitoring/ws/consumption?token=${encodeURIComponent(token)}`
-        : `${WS_BASE_URL}/monitoring/ws/consumption`;
+        ? `${WS_BASE_URL}/monitoring/ws/consumption-native?token=${encodeURIComponent(token)}`
+        : `${WS_BASE_URL}/monitoring/ws/consumption-native`;
 
       console.log("Connecting to Monitoring WebSocket at:", wsUrl);
 
-      const socket = new SockJS(wsUrl);
-
       this.client = new Client({
-        webSocketFactory: () => socket as any,
+        brokerURL: wsUrl,
         reconnectDelay: 5000,
         heartbeatIncoming: 4000,
         heartbeatOutgoing: 4000,
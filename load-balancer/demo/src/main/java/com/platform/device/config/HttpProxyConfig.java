@@ -0,0 +1,31 @@
+package com.platform.device.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class HttpProxyConfig {
+
+    @Value("${loadbalancer.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    /**
+     * Shared client for proxying to the monitoring replicas. It keeps a pool of keep-alive
+     * HTTP/1.1 connections per replica, so requests do not pay a TCP handshake each time.
+     * The pool is sized by the jdk.httpclient.keepalive.timeout and
+     * jdk.httpclient.connectionPoolSize JVM flags, set in the Dockerfile; the JDK reads them
+     * once for the whole process.
+     */
+    @Bean
+    public HttpClient proxyHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+}
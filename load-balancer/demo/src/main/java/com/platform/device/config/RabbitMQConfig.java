@@ -3,13 +3,19 @@ package com.platform.device.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -33,10 +39,16 @@ public class RabbitMQConfig {
     public static final String OVERCONSUMPTION_NOTIFICATION_ROUTING_KEY = "overconsumption.notification";
     public static final String WEBSOCKET_OVERCONSUMPTION_QUEUE = "websocket.overconsumption.queue";
 
-    // Per-replica ingest queues for load balancing
-    public static final String INGEST_QUEUE_1 = "ingest.queue.1";
-    public static final String INGEST_QUEUE_2 = "ingest.queue.2";
-    public static final String INGEST_QUEUE_3 = "ingest.queue.3";
+    // Per-replica ingest queues for load balancing: ingest.queue.1, ingest.queue.2, ...
+    public static final String INGEST_QUEUE_PREFIX = "ingest.queue.";
+
+    @Value("${loadbalancer.ingest.declared-queues:3}")
+    private int declaredIngestQueues;
+
+    public static final String FORWARDING_CONTAINER_FACTORY = "forwardingContainerFactory";
+
+    @Value("${loadbalancer.forward.prefetch:1000}")
+    private int forwardPrefetch;
 
     @Bean
     public Queue monitoringUserQueue() {
@@ -61,19 +73,17 @@ public class RabbitMQConfig {
         return QueueBuilder.durable(WEBSOCKET_OVERCONSUMPTION_QUEUE).build();
     }
 
+    /**
+     * Ingest queues declared up front so early messages are not dropped before the replicas
+     * start. Replicas beyond this count declare their own queue and are discovered at runtime.
+     */
     @Bean
-    public Queue ingestQueue1() {
-        return QueueBuilder.durable(INGEST_QUEUE_1).build();
-    }
-
-    @Bean
-    public Queue ingestQueue2() {
-        return QueueBuilder.durable(INGEST_QUEUE_2).build();
-    }
-
-    @Bean
-    public Queue ingestQueue3() {
-        return QueueBuilder.durable(INGEST_QUEUE_3).build();
+    public Declarables ingestQueues() {
+        List<Declarable> queues = new ArrayList<>();
+        for (int slot = 1; slot <= declaredIngestQueues; slot++) {
+            queues.add(QueueBuilder.durable(INGEST_QUEUE_PREFIX + slot).build());
+        }
+        return new Declarables(queues);
     }
 
     @Bean
@@ -155,10 +165,27 @@ public class RabbitMQConfig {
         return new Jackson2JsonMessageConverter(objectMapper);
     }
 
+    /**
+     * Listener container for the central measurement queue. Acks are manual: the load balancer
+     * acks a message only after the broker confirmed the forwarded copy.
+     */
+    @Bean(name = FORWARDING_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory forwardingContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(forwardPrefetch);
+        return factory;
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(jsonMessageConverter());
+        // Unroutable forwards (ingest queue gone) come back as returns instead of being dropped
+        template.setMandatory(true);
         return template;
     }
 }
@@ -1,129 +1,70 @@
 package com.platform.device.controllers;
 
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import com.platform.device.services.HttpProxyService;
+import com.platform.device.services.Replica;
+import com.platform.device.services.ReplicaRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
-import java.net.InetAddress;
-import java.net.URI;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Enumeration;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
 import java.util.List;
-import java.util.Random;
 
 @RestController
 public class LoadBalancerController {
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final Random random = new Random();
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadBalancerController.class);
 
-    // Weighted distribution: weights for up to 3 replicas (50%, 30%, 20%)
-    private static final int[] WEIGHTS = { 50, 30, 20 };
+    @Autowired
+    private HttpProxyService httpProxyService;
 
-    @RequestMapping("/**")
-    public ResponseEntity<?> proxyRequest(HttpServletRequest request, HttpEntity<byte[]> body) {
-        try {
-            // 1. Discover replicas
-            List<String> replicas = discoverReplicas();
-
-            if (replicas.isEmpty()) {
-                return ResponseEntity.status(503).body("No replicas available for monitoring-microservice");
-            }
-
-            // 2. Select replica using WEIGHTED DISTRIBUTION
-            String selectedReplicaIp = selectReplicaWeighted(replicas);
-
-            // 3. Construct Target URL
-            String requestUri = request.getRequestURI();
-            String queryString = request.getQueryString();
-            String targetUrl = "http://" + selectedReplicaIp + ":8080" + requestUri
-                    + (queryString != null ? "?" + queryString : "");
+    @Autowired
+    private ReplicaRegistry replicaRegistry;
 
-            System.out.println(
-                    "LoadBalancer forwarding " + requestUri + " to " + selectedReplicaIp + " (weighted selection)");
-
-            // 4. Copy headers from original request
-            HttpHeaders headers = new HttpHeaders();
-            Enumeration<String> headerNames = request.getHeaderNames();
-            if (headerNames != null) {
-                while (headerNames.hasMoreElements()) {
-                    String headerName = headerNames.nextElement();
-                    // Skip host header as it will be set to target
-                    if (!"host".equalsIgnoreCase(headerName)) {
-                        headers.addAll(headerName, Collections.list(request.getHeaders(headerName)));
-                    }
-                }
-            }
+    @RequestMapping("/**")
+    public void proxyRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // 1. Read the current replicas, resolved and health checked in the background
+        List<Replica> replicas = replicaRegistry.getReplicas();
 
-            // Create new HttpEntity with both headers and body
-            HttpEntity<byte[]> forwardEntity = new HttpEntity<>(body.getBody(), headers);
+        if (replicas.isEmpty()) {
+            writeError(response, 503, "No replicas available for monitoring-microservice");
+            return;
+        }
 
-            // 5. Forward Request with headers
-            return restTemplate.exchange(
-                    new URI(targetUrl),
-                    HttpMethod.valueOf(request.getMethod()),
-                    forwardEntity,
-                    byte[].class);
+        LOGGER.debug("LoadBalancer forwarding {} across {} replica(s)", request.getRequestURI(), replicas.size());
 
-        } catch (org.springframework.web.client.HttpStatusCodeException e) {
-            // Pass through errors from the downstream service
-            return ResponseEntity.status(e.getStatusCode())
-                    .headers(e.getResponseHeaders())
-                    .body(e.getResponseBodyAsByteArray());
+        // 2. Select a replica and forward, retrying idempotent requests on another one, then
+        //    stream the replica's response back, errors included
+        try {
+            httpProxyService.forward(request, response, replicas);
+        } catch (HttpTimeoutException e) {
+            LOGGER.warn("Replicas timed out for {}", request.getRequestURI());
+            sendErrorIfPossible(response, 504, "Load Balancer Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendErrorIfPossible(response, 500, "Load Balancer Error: interrupted");
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(500).body("Load Balancer Error: " + e.getMessage());
+            LOGGER.error("Error proxying {}: {}", request.getRequestURI(), e.getMessage(), e);
+            sendErrorIfPossible(response, 500, "Load Balancer Error: " + e.getMessage());
         }
     }
 
-    /**
-     * Selects a replica using weighted distribution.
-     * Replica 1 gets 50% of traffic, Replica 2 gets 30%, Replica 3 gets 20%
-     */
-    private String selectReplicaWeighted(List<String> replicas) {
-        if (replicas.size() == 1) {
-            return replicas.get(0);
+    private void sendErrorIfPossible(HttpServletResponse response, int status, String message) throws IOException {
+        // Once the replica's response started streaming the status line has already been sent
+        if (!response.isCommitted()) {
+            response.reset();
+            writeError(response, status, message);
         }
-
-        // Calculate total weight based on number of available replicas
-        int totalWeight = 0;
-        for (int i = 0; i < Math.min(replicas.size(), WEIGHTS.length); i++) {
-            totalWeight += WEIGHTS[i];
-        }
-
-        // Generate random number between 0 and totalWeight
-        int randomValue = random.nextInt(totalWeight);
-
-        // Select replica based on weighted ranges
-        int cumulativeWeight = 0;
-        for (int i = 0; i < Math.min(replicas.size(), WEIGHTS.length); i++) {
-            cumulativeWeight += WEIGHTS[i];
-            if (randomValue < cumulativeWeight) {
-                return replicas.get(i);
-            }
-        }
-
-        // Fallback (should not reach here)
-        return replicas.get(0);
     }
 
-    private List<String> discoverReplicas() {
-        List<String> ips = new ArrayList<>();
-        try {
-            // Swarm DNS for the service
-            InetAddress[] addresses = InetAddress.getAllByName("tasks.monitoring-microservice");
-            for (InetAddress address : addresses) {
-                ips.add(address.getHostAddress());
-            }
-        } catch (Exception e) {
-            System.err.println("Error discovering replicas: " + e.getMessage());
-        }
-        return ips;
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(message);
     }
 }
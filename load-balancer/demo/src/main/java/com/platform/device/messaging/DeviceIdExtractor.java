@@ -0,0 +1,146 @@
+package com.platform.device.messaging;
+
+import org.springframework.amqp.core.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads the deviceId of a measurement straight from the AMQP message, either from a
+ * "deviceId" header, from the first 16 bytes of a binary measurement or by scanning the JSON
+ * body, without deserializing it.
+ */
+public final class DeviceIdExtractor {
+
+    public static final String DEVICE_ID_HEADER = "deviceId";
+
+    // Fixed-layout measurement: device id msb and lsb, epoch micros, value; 8 bytes each, big-endian
+    public static final String BINARY_CONTENT_TYPE = "application/x-device-measurement";
+    // Envelope of any number of fixed-layout measurements, possibly of different devices
+    public static final String BATCH_CONTENT_TYPE = "application/x-device-measurement-batch";
+    public static final int BINARY_RECORD_SIZE = 32;
+    private static final int BINARY_DEVICE_ID_LENGTH = 16;
+
+    private static final byte[] DEVICE_ID_KEY = "\"deviceId\"".getBytes(StandardCharsets.US_ASCII);
+    private static final int UUID_LENGTH = 36;
+
+    private DeviceIdExtractor() {
+    }
+
+    /**
+     * Returns the device id of the message, or null if it has none or it is malformed.
+     */
+    public static UUID extract(Message message) {
+        Object header = message.getMessageProperties().getHeader(DEVICE_ID_HEADER);
+        if (header != null) {
+            try {
+                return UUID.fromString(header.toString());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        String mediaType = mediaType(message);
+        if (BINARY_CONTENT_TYPE.equals(mediaType) || BATCH_CONTENT_TYPE.equals(mediaType)) {
+            // For an envelope this is the device of its first measurement
+            return extractFromBinary(message.getBody());
+        }
+        return extractFromJson(message.getBody());
+    }
+
+    public static boolean isBatch(Message message) {
+        return BATCH_CONTENT_TYPE.equals(mediaType(message));
+    }
+
+    /**
+     * Content type without parameters such as charset.
+     */
+    private static String mediaType(Message message) {
+        String contentType = message.getMessageProperties().getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim();
+    }
+
+    static UUID extractFromBinary(byte[] body) {
+        if (body == null || body.length < BINARY_DEVICE_ID_LENGTH) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        return new UUID(buffer.getLong(0), buffer.getLong(8));
+    }
+
+    static UUID extractFromJson(byte[] body) {
+        if (body == null) {
+            return null;
+        }
+
+        int keyIndex = indexOf(body, DEVICE_ID_KEY);
+        if (keyIndex < 0) {
+            return null;
+        }
+
+        int i = skipWhitespace(body, keyIndex + DEVICE_ID_KEY.length);
+        if (i >= body.length || body[i] != ':') {
+            return null;
+        }
+        i = skipWhitespace(body, i + 1);
+        if (i >= body.length || body[i] != '"' || i + 1 + UUID_LENGTH > body.length) {
+            return null;
+        }
+        return parseUuid(body, i + 1);
+    }
+
+    /**
+     * Parses the canonical 8-4-4-4-12 hex form without allocating a String.
+     */
+    private static UUID parseUuid(byte[] bytes, int offset) {
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+        for (int i = offset; i < offset + UUID_LENGTH; i++) {
+            int position = i - offset;
+            if (position == 8 || position == 13 || position == 18 || position == 23) {
+                if (bytes[i] != '-') {
+                    return null;
+                }
+                continue;
+            }
+
+            int value = Character.digit(bytes[i], 16);
+            if (value < 0) {
+                return null;
+            }
+            if (digits < 16) {
+                msb = (msb << 4) | value;
+            } else {
+                lsb = (lsb << 4) | value;
+            }
+            digits++;
+        }
+        return new UUID(msb, lsb);
+    }
+
+    private static int skipWhitespace(byte[] bytes, int from) {
+        int i = from;
+        while (i < bytes.length && (bytes[i] == ' ' || bytes[i] == '\t' || bytes[i] == '\n' || bytes[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
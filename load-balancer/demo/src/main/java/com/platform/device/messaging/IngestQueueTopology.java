@@ -0,0 +1,228 @@
+package com.platform.device.messaging;
+
+import com.platform.device.config.RabbitMQConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Discovers the per-replica ingest queues on the broker at runtime and keeps an immutable
+ * snapshot of them with their depth, consumer count and derived routing weight.
+ * <p>
+ * Queues are named {@code ingest.queue.<slot>}; every slot up to {@code max-queues} is probed
+ * with a passive declare, so a new monitoring replica is picked up on the next refresh
+ * without a restart. A queue is live while at least one replica consumes from it. It becomes
+ * overloaded when its backlog per consumer rises above the high watermark and only recovers
+ * once it drops below the low watermark, so the state does not flap around a single
+ * threshold. Weighted and adaptive routing steer away from overloaded queues; consistent
+ * hashing keeps devices on their queue and leaves the overload to backpressure.
+ */
+@Service
+public class IngestQueueTopology {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestQueueTopology.class);
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Value("${loadbalancer.ingest.max-queues:16}")
+    private int maxQueues;
+
+    @Value("${loadbalancer.ingest.declared-queues:3}")
+    private int declaredQueues;
+
+    // Backlog at which a queue's weight is halved
+    @Value("${loadbalancer.ingest.depth-scale:1000}")
+    private long depthScale;
+
+    @Value("${loadbalancer.adaptive.high-watermark:5000}")
+    private long highWatermark;
+
+    @Value("${loadbalancer.adaptive.low-watermark:1000}")
+    private long lowWatermark;
+
+    private volatile Snapshot snapshot;
+
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            current = declaredSnapshot();
+            snapshot = current;
+        }
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${loadbalancer.ingest.refresh-interval-ms:5000}")
+    public void refresh() {
+        Snapshot previous = snapshot;
+        List<IngestQueue> live = new ArrayList<>();
+        for (int slot = 1; slot <= maxQueues; slot++) {
+            String name = RabbitMQConfig.INGEST_QUEUE_PREFIX + slot;
+            QueueInformation info;
+            try {
+                info = amqpAdmin.getQueueInfo(name);
+            } catch (Exception e) {
+                LOGGER.warn("Could not inspect ingest queue {}: {}", name, e.getMessage());
+                continue;
+            }
+            if (info != null && info.getConsumerCount() > 0) {
+                boolean overloaded = isOverloaded(previous, name, info.getMessageCount(), info.getConsumerCount());
+                live.add(new IngestQueue(name, slot, info.getMessageCount(), info.getConsumerCount(),
+                        weight(info.getMessageCount(), info.getConsumerCount()), overloaded, new AtomicLong()));
+            }
+        }
+
+        if (live.isEmpty()) {
+            // Nobody is consuming (yet), keep routing to the queues we know about
+            LOGGER.warn("No ingest queue has a consumer, keeping the previous topology");
+            return;
+        }
+
+        Snapshot next = new Snapshot(live);
+        snapshot = next;
+        if (previous == null || !previous.sameQueues(next)) {
+            LOGGER.info("Ingest queue topology changed: {}", next.queueNames());
+        }
+    }
+
+    private boolean isOverloaded(Snapshot previous, String name, long messageCount, int consumerCount) {
+        long backlogPerConsumer = messageCount / consumerCount;
+        boolean wasOverloaded = previous != null && previous.queues.stream()
+                .anyMatch(queue -> queue.name().equals(name) && queue.overloaded());
+
+        boolean overloaded = wasOverloaded ? backlogPerConsumer > lowWatermark : backlogPerConsumer > highWatermark;
+        if (overloaded != wasOverloaded) {
+            LOGGER.warn("Ingest queue {} {} ({} messages per consumer)", name,
+                    overloaded ? "is overloaded" : "recovered", backlogPerConsumer);
+        }
+        return overloaded;
+    }
+
+    /**
+     * Weight proportional to the consumers draining the queue, decaying with its backlog.
+     */
+    private int weight(long messageCount, int consumerCount) {
+        double weight = 100.0 * consumerCount / (1.0 + (double) messageCount / depthScale);
+        return Math.max(1, (int) Math.round(weight));
+    }
+
+    private Snapshot declaredSnapshot() {
+        List<IngestQueue> queues = new ArrayList<>();
+        for (int slot = 1; slot <= declaredQueues; slot++) {
+            queues.add(new IngestQueue(RabbitMQConfig.INGEST_QUEUE_PREFIX + slot, slot, 0, 1, 100, false, new AtomicLong()));
+        }
+        return new Snapshot(queues);
+    }
+
+    /**
+     * One ingest queue as sampled. sentSinceSample counts messages routed to it since the sample
+     * was taken, so routing can account for backlog the broker has not reported yet.
+     */
+    public record IngestQueue(String name, int slot, long messageCount, int consumerCount, int weight,
+                              boolean overloaded, AtomicLong sentSinceSample) {
+
+        /**
+         * Estimated backlog per consumer right now.
+         */
+        public double load() {
+            return (double) (messageCount + sentSinceSample.get()) / Math.max(1, consumerCount);
+        }
+    }
+
+    /**
+     * Live ingest queues at one point in time, indexed by slot for consistent hashing. The
+     * routable subset (not overloaded, or all of them if every queue is overloaded) is indexed
+     * by cumulative weight for weighted selection.
+     */
+    public static final class Snapshot {
+        private final List<IngestQueue> queues;
+        private final List<IngestQueue> routable;
+        private final IngestQueue[] bySlot;
+        private final int[] cumulativeWeights;
+
+        Snapshot(List<IngestQueue> queues) {
+            this.queues = Collections.unmodifiableList(new ArrayList<>(queues));
+
+            List<IngestQueue> healthy = queues.stream().filter(queue -> !queue.overloaded()).toList();
+            this.routable = healthy.isEmpty() ? this.queues : healthy;
+
+            int highestSlot = 0;
+            for (IngestQueue queue : queues) {
+                highestSlot = Math.max(highestSlot, queue.slot());
+            }
+            this.bySlot = new IngestQueue[highestSlot];
+            for (IngestQueue queue : queues) {
+                bySlot[queue.slot() - 1] = queue;
+            }
+
+            this.cumulativeWeights = new int[routable.size()];
+            int total = 0;
+            for (int i = 0; i < routable.size(); i++) {
+                total += routable.get(i).weight();
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        public List<IngestQueue> queues() {
+            return queues;
+        }
+
+        public List<IngestQueue> routable() {
+            return routable;
+        }
+
+        /**
+         * Number of slots (highest slot in use), the bucket count for consistent hashing.
+         */
+        public int slotCount() {
+            return bySlot.length;
+        }
+
+        /**
+         * Queue for a 0-based slot index, or null if that replica is not live.
+         */
+        public IngestQueue atSlot(int index) {
+            return bySlot[index];
+        }
+
+        public int totalWeight() {
+            return cumulativeWeights.length == 0 ? 0 : cumulativeWeights[cumulativeWeights.length - 1];
+        }
+
+        /**
+         * Queue whose cumulative weight range contains the given value in [0, totalWeight).
+         */
+        public IngestQueue atWeight(int value) {
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return routable.get(i);
+                }
+            }
+            return routable.get(0);
+        }
+
+        /**
+         * Whether the queue of this name is live and overloaded.
+         */
+        public boolean isOverloaded(String name) {
+            return queues.stream().anyMatch(queue -> queue.name().equals(name) && queue.overloaded());
+        }
+
+        List<String> queueNames() {
+            return queues.stream().map(IngestQueue::name).toList();
+        }
+
+        boolean sameQueues(Snapshot other) {
+            return queueNames().equals(other.queueNames());
+        }
+    }
+}
@@ -1,72 +1,408 @@
 package com.platform.device.messaging;
 
+import com.platform.device.config.RabbitMQConfig;
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class MessageLoadBalancer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageLoadBalancer.class);
 
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
     private final Random random = new Random();
 
-    // Weighted distribution: 50%, 30%, 20%
-    private static final int[] WEIGHTS = { 50, 30, 20 };
-    private static final String[] INGEST_QUEUES = {
-            "ingest.queue.1",
-            "ingest.queue.2",
-            "ingest.queue.3"
-    };
+    // "consistent-hash" pins each device to one ingest queue, "weighted" spreads messages randomly,
+    // "adaptive" sends each message to the less backlogged of two random queues
+    @Value("${loadbalancer.routing.mode:consistent-hash}")
+    private String routingMode;
+
+    // Relative load difference below which two candidates count as equally loaded
+    @Value("${loadbalancer.adaptive.margin:0.2}")
+    private double adaptiveMargin;
+
+    // Longest a consistent-hash forward is held for its overloaded queue to drain, 0 does not hold
+    @Value("${loadbalancer.routing.max-backpressure-ms:30000}")
+    private long maxBackpressureMs;
+
+    // Held forwards per ingest queue; they stay unacked, so all queues together must stay below the prefetch
+    @Value("${loadbalancer.routing.max-parked-per-queue:200}")
+    private int maxParkedPerQueue;
+
+    @Autowired
+    private IngestQueueTopology ingestQueueTopology;
+
+    // Re-hash attempts before giving up on finding a live slot for a device
+    private static final int MAX_REHASH_ATTEMPTS = 8;
+
+    private final Semaphore inFlight;
+    // Ingest queue name -> forwards held while it is overloaded, oldest first
+    private final ConcurrentHashMap<String, ArrayDeque<ParkedForward>> parked = new ConcurrentHashMap<>();
+
+    public MessageLoadBalancer(@Value("${loadbalancer.forward.max-in-flight:1000}") int maxInFlight) {
+        this.inFlight = new Semaphore(maxInFlight);
+    }
 
     /**
      * Consumes from central device measurements queue
-     * and forwards to per-replica ingest queues using weighted distribution.
+     * and forwards to per-replica ingest queues, by consistent hash of the deviceId
+     * or by weighted distribution depending on the routing mode.
      * Uses raw Message object to avoid deserialization overhead/errors.
+     * <p>
+     * Forwards are pipelined: the listener does not wait for the broker, the message is acked
+     * from the publisher confirm callback once the forwarded copy is confirmed, and nacked
+     * back onto the central queue if the forward is nacked, returned or fails. At most
+     * max-in-flight forwards are unconfirmed at any time.
+     * <p>
+     * With consistent hashing, an envelope of several measurements is split into one envelope
+     * per target queue, and acked once every part is confirmed. If only some parts fail, the
+     * failed parts alone are published back to the central queue and the envelope is acked,
+     * so the confirmed parts are not delivered twice. A device stays on its queue
+     * even when that queue is overloaded: its forwards are parked, unacked, until the queue
+     * drains, so the backlog builds up in the central queue instead while the listener goes on
+     * forwarding to the other queues.
      */
-    @RabbitListener(queues = "device.measurement.queue")
-    public void handleDeviceMeasurement(Message message) {
+    @RabbitListener(queues = RabbitMQConfig.DEVICE_MEASUREMENT_QUEUE,
+            containerFactory = RabbitMQConfig.FORWARDING_CONTAINER_FACTORY)
+    public void handleDeviceMeasurement(Message message, Channel channel) {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        if (Boolean.TRUE.equals(message.getMessageProperties().getRedelivered())) {
+            LOGGER.warn("Forwarding redelivered measurement (delivery tag {}), it may be a duplicate", deliveryTag);
+        }
+
+        Map<IngestQueueTopology.IngestQueue, Message> forwards;
         try {
-            // Select target queue using weighted distribution
-            String targetQueue = selectQueueWeighted();
+            IngestQueueTopology.Snapshot topology = ingestQueueTopology.snapshot();
+            if ("consistent-hash".equals(routingMode) && DeviceIdExtractor.isBatch(message)) {
+                forwards = splitByConsistentHash(topology, message);
+            } else {
+                forwards = Map.of(selectQueue(topology, message), message);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Could not select an ingest queue: {}", e.getMessage(), e);
+            settle(channel, deliveryTag, false);
+            return;
+        }
+        if (forwards.isEmpty()) {
+            LOGGER.warn("Dropping empty measurement envelope (delivery tag {})", deliveryTag);
+            settle(channel, deliveryTag, true);
+            return;
+        }
 
-            // Forward message to the selected replica's ingest queue
-            rabbitTemplate.send(targetQueue, message);
+        // The delivery is settled once, after the last part
+        AtomicInteger pendingParts = new AtomicInteger(forwards.size());
+        Queue<Message> failedParts = new ConcurrentLinkedQueue<>();
+        Function<Message, Consumer<Boolean>> partDone = part -> delivered -> {
+            if (!delivered) {
+                failedParts.add(part);
+            }
+            if (pendingParts.decrementAndGet() == 0) {
+                if (failedParts.isEmpty() || failedParts.size() == forwards.size()) {
+                    settle(channel, deliveryTag, failedParts.isEmpty());
+                } else {
+                    requeueParts(failedParts, () -> settle(channel, deliveryTag, true));
+                }
+            }
+        };
 
-            System.out.println("Message Load Balancer: Forwarded message to " + targetQueue);
+        for (Map.Entry<IngestQueueTopology.IngestQueue, Message> forward : forwards.entrySet()) {
+            if ("consistent-hash".equals(routingMode)) {
+                forwardOrPark(forward.getKey(), forward.getValue(), partDone.apply(forward.getValue()));
+            } else {
+                forward(forward.getKey(), forward.getValue(), partDone.apply(forward.getValue()));
+            }
+        }
+    }
 
+    /**
+     * Publishes the failed parts of an envelope back to the central queue, to be routed again,
+     * and runs the callback once each of them is confirmed or failed. A part that cannot be
+     * published is lost rather than the whole envelope being redelivered.
+     */
+    private void requeueParts(Collection<Message> parts, Runnable done) {
+        LOGGER.warn("{} part(s) of a measurement envelope were not forwarded, publishing them back to {}",
+                parts.size(), RabbitMQConfig.DEVICE_MEASUREMENT_QUEUE);
+        AtomicInteger pending = new AtomicInteger(parts.size());
+        for (Message part : parts) {
+            publish(RabbitMQConfig.DEVICE_MEASUREMENT_QUEUE, part, delivered -> {
+                if (!delivered) {
+                    LOGGER.error("Dropping {} bytes of measurements that could not be requeued", part.getBody().length);
+                }
+                if (pending.decrementAndGet() == 0) {
+                    done.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Forwards a message, or parks it while its queue is overloaded or already has parked
+     * forwards, so a device's measurements keep their order. Once max-parked-per-queue are
+     * parked, the oldest is forwarded anyway.
+     */
+    private void forwardOrPark(IngestQueueTopology.IngestQueue target, Message message, Consumer<Boolean> done) {
+        ArrayDeque<ParkedForward> queue = parked.computeIfAbsent(target.name(), name -> new ArrayDeque<>());
+        // Forwards run under the queue's lock, so a released forward never overtakes a newer one
+        synchronized (queue) {
+            if (maxBackpressureMs <= 0
+                    || (queue.isEmpty() && !ingestQueueTopology.snapshot().isOverloaded(target.name()))) {
+                forward(target, message, done);
+                return;
+            }
+            if (queue.isEmpty()) {
+                LOGGER.debug("Ingest queue {} is overloaded, parking its forwards", target.name());
+            }
+            queue.addLast(new ParkedForward(target, message, done, System.nanoTime()));
+            if (queue.size() > maxParkedPerQueue) {
+                ParkedForward oldest = queue.pollFirst();
+                forward(oldest.target(), oldest.message(), oldest.done());
+            }
+        }
+    }
+
+    /**
+     * Forwards the parked messages of queues that drained, and those parked for longer than
+     * max-backpressure-ms.
+     */
+    @Scheduled(fixedDelayString = "${loadbalancer.routing.backpressure-poll-ms:100}")
+    public void releaseParked() {
+        long maxParkedNanos = maxBackpressureMs * 1_000_000L;
+        IngestQueueTopology.Snapshot topology = ingestQueueTopology.snapshot();
+        parked.forEach((name, queue) -> {
+            synchronized (queue) {
+                boolean overloaded = topology.isOverloaded(name);
+                long now = System.nanoTime();
+                while (!queue.isEmpty() && (!overloaded || now - queue.peekFirst().parkedNanos() >= maxParkedNanos)) {
+                    ParkedForward forward = queue.pollFirst();
+                    forward(forward.target(), forward.message(), forward.done());
+                }
+            }
+        });
+    }
+
+    private void forward(IngestQueueTopology.IngestQueue target, Message message, Consumer<Boolean> done) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done.accept(false);
+            return;
+        }
+
+        boolean sent = publish(target.name(), message, delivered -> {
+            inFlight.release();
+            done.accept(delivered);
+        });
+        if (sent) {
+            target.sentSinceSample().incrementAndGet();
+            LOGGER.debug("Forwarded message to {}", target.name());
+        }
+    }
+
+    /**
+     * Publishes a message to a queue and reports exactly once whether the broker confirmed it.
+     * Returns whether it was sent at all. Never blocks, so it can run on the confirm thread.
+     */
+    private boolean publish(String queueName, Message message, Consumer<Boolean> done) {
+        AtomicBoolean settled = new AtomicBoolean();
+        CorrelationData correlation = new CorrelationData();
+        correlation.getFuture().whenComplete((confirm, ex) -> {
+            boolean delivered = ex == null && confirm.isAck() && correlation.getReturned() == null;
+            if (!delivered) {
+                LOGGER.warn("Publish to {} was not confirmed ({})", queueName,
+                        ex != null ? ex.getMessage()
+                                : correlation.getReturned() != null ? correlation.getReturned().getReplyText()
+                                : confirm.getReason());
+            }
+            if (settled.compareAndSet(false, true)) {
+                done.accept(delivered);
+            }
+        });
+
+        try {
+            rabbitTemplate.send("", queueName, message, correlation);
+            return true;
         } catch (Exception e) {
-            System.err.println("Error in message load balancer: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error in message load balancer: {}", e.getMessage(), e);
+            if (settled.compareAndSet(false, true)) {
+                done.accept(false);
+            }
+            return false;
         }
     }
 
+    private record ParkedForward(IngestQueueTopology.IngestQueue target, Message message,
+                                 Consumer<Boolean> done, long parkedNanos) {
+    }
+
     /**
-     * Selects a queue using weighted distribution.
-     * Queue 1 gets 50% of messages, Queue 2 gets 30%, Queue 3 gets 20%
+     * Groups the measurements of an envelope by the ingest queue of their device. An envelope
+     * that maps to a single queue is forwarded as is.
      */
-    private String selectQueueWeighted() {
-        // Calculate total weight
-        int totalWeight = WEIGHTS[0] + WEIGHTS[1] + WEIGHTS[2]; // 100
+    private Map<IngestQueueTopology.IngestQueue, Message> splitByConsistentHash(
+            IngestQueueTopology.Snapshot topology, Message message) {
+        byte[] body = message.getBody();
+        ByteBuffer records = ByteBuffer.wrap(body);
+        int recordSize = DeviceIdExtractor.BINARY_RECORD_SIZE;
 
-        // Generate random number between 0 and totalWeight
-        int randomValue = random.nextInt(totalWeight);
+        Map<IngestQueueTopology.IngestQueue, ByteArrayOutputStream> parts = new LinkedHashMap<>();
+        for (int offset = 0; offset + recordSize <= body.length; offset += recordSize) {
+            long key = mix(records.getLong(offset) ^ records.getLong(offset + 8));
+            IngestQueueTopology.IngestQueue target = selectQueueConsistentHash(topology, key);
+            parts.computeIfAbsent(target, queue -> new ByteArrayOutputStream(body.length))
+                    .write(body, offset, recordSize);
+        }
+        if (body.length % recordSize != 0) {
+            LOGGER.warn("Measurement envelope of {} bytes has a trailing partial record, dropping it", body.length);
+        }
 
-        // Select queue based on weighted ranges
-        int cumulativeWeight = 0;
-        for (int i = 0; i < INGEST_QUEUES.length; i++) {
-            cumulativeWeight += WEIGHTS[i];
-            if (randomValue < cumulativeWeight) {
-                return INGEST_QUEUES[i];
+        if (parts.size() == 1 && body.length % recordSize == 0) {
+            return Map.of(parts.keySet().iterator().next(), message);
+        }
+        Map<IngestQueueTopology.IngestQueue, Message> forwards = new LinkedHashMap<>();
+        parts.forEach((target, part) -> forwards.put(target, MessageBuilder.withBody(part.toByteArray())
+                .copyProperties(message.getMessageProperties())
+                .build()));
+        return forwards;
+    }
+
+    /**
+     * Acks the original delivery, or nacks it back onto the central queue.
+     */
+    private void settle(Channel channel, long deliveryTag, boolean delivered) {
+        try {
+            if (delivered) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        } catch (Exception e) {
+            // The consumer channel is gone; the broker redelivers the message to the next consumer
+            LOGGER.error("Could not {} delivery {}: {}", delivered ? "ack" : "nack", deliveryTag, e.getMessage());
+        }
+    }
+
+    private IngestQueueTopology.IngestQueue selectQueue(IngestQueueTopology.Snapshot topology, Message message) {
+        if ("adaptive".equals(routingMode)) {
+            return selectQueueLeastBacklogged(topology);
+        }
+        if ("consistent-hash".equals(routingMode)) {
+            UUID deviceId = DeviceIdExtractor.extract(message);
+            if (deviceId != null) {
+                return selectQueueConsistentHash(topology, deviceKey(deviceId));
+            }
+        }
+        // Weighted mode, or a message without a readable deviceId
+        return selectQueueWeighted(topology);
+    }
+
+    /**
+     * Selects a queue with jump consistent hashing on the deviceId, so all measurements of a
+     * device land on the same replica and changing the number of queues only moves about
+     * 1/N of the devices. Buckets are replica slots; when a slot has no live queue the key is
+     * re-hashed, so only the devices of the missing replica move. Overloaded queues keep their
+     * devices.
+     */
+    private IngestQueueTopology.IngestQueue selectQueueConsistentHash(IngestQueueTopology.Snapshot topology, long key) {
+        for (int attempt = 0; attempt < MAX_REHASH_ATTEMPTS; attempt++) {
+            IngestQueueTopology.IngestQueue queue = topology.atSlot(jumpConsistentHash(key, topology.slotCount()));
+            if (queue != null) {
+                return queue;
             }
+            key = mix(key + attempt + 1);
         }
+        return topology.routable().get(0);
+    }
+
+    /**
+     * Power of two choices: samples two routable queues and takes the one with the smaller
+     * estimated backlog per consumer. Candidates within the margin of each other are treated
+     * as equal and the first draw wins, so small fluctuations do not steer traffic.
+     */
+    private IngestQueueTopology.IngestQueue selectQueueLeastBacklogged(IngestQueueTopology.Snapshot topology) {
+        List<IngestQueueTopology.IngestQueue> routable = topology.routable();
+        if (routable.size() == 1) {
+            return routable.get(0);
+        }
+
+        int first = random.nextInt(routable.size());
+        int second = random.nextInt(routable.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        IngestQueueTopology.IngestQueue a = routable.get(first);
+        IngestQueueTopology.IngestQueue b = routable.get(second);
+        return b.load() < a.load() * (1.0 - adaptiveMargin) ? b : a;
+    }
+
+    private static long deviceKey(UUID deviceId) {
+        return mix(deviceId.getMostSignificantBits() ^ deviceId.getLeastSignificantBits());
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
 
-        // Fallback (should not reach here)
-        return INGEST_QUEUES[0];
+    /**
+     * Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm".
+     */
+    static int jumpConsistentHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * 2862933555777866757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+
+    /**
+     * Selects a queue using weighted distribution.
+     * Weights come from the live topology: proportional to each queue's consumers and
+     * decaying with its backlog.
+     */
+    private IngestQueueTopology.IngestQueue selectQueueWeighted(IngestQueueTopology.Snapshot topology) {
+        int totalWeight = topology.totalWeight();
+        if (totalWeight <= 0) {
+            return topology.routable().get(0);
+        }
+
+        // Generate random number between 0 and totalWeight
+        int randomValue = random.nextInt(totalWeight);
+        return topology.atWeight(randomValue);
     }
 }
@@ -0,0 +1,352 @@
+package com.platform.device.services;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Forwards a servlet request to a replica over the pooled client and streams both bodies
+ * instead of buffering them.
+ * <p>
+ * An attempt is settled as soon as the replica's status line and headers arrive, before any
+ * byte is written to the client, so a failed attempt can still be replaced:
+ * <ul>
+ *     <li>connection errors, timeouts and 502/503/504 answers count against the replica's
+ *     circuit breaker, and replicas with an open breaker are not selected</li>
+ *     <li>idempotent requests without a body (GET, HEAD, OPTIONS) are retried on another
+ *     replica, up to {@code retry.max-attempts} and within the shared {@link RetryBudget}</li>
+ *     <li>with {@code hedge.enabled}, an idempotent request still unanswered after the recent
+ *     p95 latency is also sent to a second replica and the first usable answer wins</li>
+ * </ul>
+ * Requests with a body are streamed straight through and never retried.
+ */
+@Service
+public class HttpProxyService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpProxyService.class);
+
+    // Hop-by-hop headers plus the ones the JDK client sets itself and refuses to accept
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer",
+            "transfer-encoding", "upgrade", "host", "content-length", "expect");
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    // Answers that mean the replica (or what is in front of it) could not serve the request
+    private static final Set<Integer> FAILURE_STATUSES = Set.of(502, 503, 504);
+
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final int MIN_HEDGE_SAMPLES = 100;
+
+    @Autowired
+    private HttpClient proxyHttpClient;
+
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
+    @Autowired
+    private ReplicaRegistry replicaRegistry;
+
+    @Autowired
+    private RetryBudget retryBudget;
+
+    // Bounds the wait for the response headers only, a body streaming slowly is not cut off
+    @Value("${loadbalancer.http.headers-timeout-ms:10000}")
+    private long headersTimeoutMs;
+
+    // Time constant of the latency EWMA decay
+    @Value("${loadbalancer.http.ewma-decay-ms:10000}")
+    private long ewmaDecayMs;
+
+    @Value("${loadbalancer.http.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${loadbalancer.http.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${loadbalancer.http.breaker.open-ms:10000}")
+    private long breakerOpenMs;
+
+    @Value("${loadbalancer.http.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${loadbalancer.http.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${loadbalancer.http.hedge.min-delay-ms:10}")
+    private long hedgeMinDelayMs;
+
+    // Ring of recent time-to-headers of successful attempts, for the hedge delay
+    private final AtomicLongArray latencySamples = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong latencyCursor = new AtomicLong();
+
+    // 0 until enough samples were collected, no hedging before that
+    private volatile long hedgeDelayNanos;
+
+    /**
+     * Sends the request to one of the replicas and copies status, headers and body to the response.
+     */
+    public void forward(HttpServletRequest request, HttpServletResponse response, List<Replica> replicas)
+            throws IOException, InterruptedException {
+        retryBudget.deposit();
+
+        boolean idempotent = IDEMPOTENT_METHODS.contains(request.getMethod()) && !hasBody(request);
+        HttpRequest.BodyPublisher body = idempotent ? HttpRequest.BodyPublishers.noBody() : bodyPublisher(request);
+        String queryString = request.getQueryString();
+        String pathAndQuery = request.getRequestURI() + (queryString != null ? "?" + queryString : "");
+        Function<Replica, HttpRequest> requestFor = replica -> buildRequest(request, replica, pathAndQuery, body);
+
+        int attempts = idempotent ? Math.max(1, maxAttempts) : 1;
+        List<Replica> tried = new ArrayList<>(attempts + 1);
+        for (int attempt = 1; ; attempt++) {
+            Replica replica = choose(replicas, tried);
+            tried.add(replica);
+
+            HttpResponse<InputStream> upstream = null;
+            IOException failure = null;
+            try {
+                upstream = idempotent && hedgeEnabled
+                        ? sendHedged(requestFor, replica, replicas, tried)
+                        : await(send(replica, requestFor.apply(replica)));
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            boolean failed = upstream == null || FAILURE_STATUSES.contains(upstream.statusCode());
+            if (!failed || attempt >= attempts || !retryBudget.tryWithdraw()) {
+                if (upstream == null) {
+                    throw failure;
+                }
+                copyResponse(upstream, response);
+                LOGGER.debug("Proxied {} {} -> {} ({} attempt(s))", request.getMethod(), request.getRequestURI(),
+                        upstream.statusCode(), attempt);
+                return;
+            }
+
+            LOGGER.debug("Retrying {} {} after {} from {}", request.getMethod(), request.getRequestURI(),
+                    upstream != null ? upstream.statusCode() : failure.getMessage(), replica);
+            if (upstream != null) {
+                upstream.body().close();
+            }
+        }
+    }
+
+    /**
+     * Recomputes the hedge delay from the recent latency percentile.
+     */
+    @Scheduled(fixedDelayString = "${loadbalancer.http.hedge.refresh-interval-ms:1000}")
+    public void refreshHedgeDelay() {
+        if (!hedgeEnabled) {
+            return;
+        }
+        int count = (int) Math.min(latencyCursor.get(), LATENCY_SAMPLES);
+        if (count < MIN_HEDGE_SAMPLES) {
+            return;
+        }
+
+        long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = latencySamples.get(i);
+        }
+        Arrays.sort(samples);
+        int index = Math.min(count - 1, Math.max(0, (int) Math.ceil(count * hedgePercentile) - 1));
+        hedgeDelayNanos = Math.max(samples[index], hedgeMinDelayMs * 1_000_000L);
+    }
+
+    /**
+     * Picks a replica not tried yet whose breaker lets requests through, falling back to the
+     * untried ones and finally to all of them so a request is never refused here.
+     */
+    private Replica choose(List<Replica> replicas, List<Replica> tried) {
+        long openNanos = breakerOpenMs * 1_000_000L;
+        List<Replica> untried = replicas.stream().filter(replica -> !tried.contains(replica)).toList();
+        List<Replica> candidates = untried.stream().filter(replica -> replica.isAvailable(openNanos)).toList();
+        if (candidates.isEmpty()) {
+            candidates = untried.isEmpty() ? replicas : untried;
+        }
+
+        Replica replica = replicaSelector.select(candidates);
+        replica.tryAcquirePermission(openNanos);
+        return replica;
+    }
+
+    private HttpResponse<InputStream> sendHedged(Function<Replica, HttpRequest> requestFor, Replica primary,
+                                                 List<Replica> replicas, List<Replica> tried)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<InputStream>> first = send(primary, requestFor.apply(primary));
+        long delay = hedgeDelayNanos;
+        if (delay <= 0) {
+            return await(first);
+        }
+
+        try {
+            return first.get(delay, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (TimeoutException e) {
+            // Slower than the recent percentile, hedge below
+        }
+
+        Replica backup = choose(replicas, tried);
+        if (tried.contains(backup) || !retryBudget.tryWithdraw()) {
+            return await(first);
+        }
+        tried.add(backup);
+        LOGGER.debug("Hedging request to {} after {} ms", backup, delay / 1_000_000);
+        return await(firstUsable(first, send(backup, requestFor.apply(backup))));
+    }
+
+    /**
+     * Completes with the first answer that is not a failure, or with the last outcome if both
+     * failed. The losing response is closed so its connection goes back to the pool.
+     */
+    private static CompletableFuture<HttpResponse<InputStream>> firstUsable(
+            CompletableFuture<HttpResponse<InputStream>> first, CompletableFuture<HttpResponse<InputStream>> second) {
+        CompletableFuture<HttpResponse<InputStream>> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        BiConsumer<HttpResponse<InputStream>, Throwable> race = (upstream, e) -> {
+            boolean usable = e == null && !FAILURE_STATUSES.contains(upstream.statusCode());
+            boolean last = remaining.decrementAndGet() == 0;
+            if (usable || last) {
+                boolean won = e == null ? winner.complete(upstream) : winner.completeExceptionally(e);
+                if (won) {
+                    return;
+                }
+            }
+            if (upstream != null) {
+                closeQuietly(upstream);
+            }
+        };
+        first.whenComplete(race);
+        second.whenComplete(race);
+        return winner;
+    }
+
+    /**
+     * Sends one attempt asynchronously and records its outcome on the replica once the
+     * headers arrive (or the attempt fails).
+     */
+    private CompletableFuture<HttpResponse<InputStream>> send(Replica replica, HttpRequest upstreamRequest) {
+        long startNanos = replica.beginRequest();
+        return proxyHttpClient.sendAsync(upstreamRequest, HttpResponse.BodyHandlers.ofInputStream())
+                .whenComplete((upstream, e) -> {
+                    long elapsed = System.nanoTime() - startNanos;
+                    replica.endRequest(startNanos, ewmaDecayMs * 1_000_000L);
+                    if (e == null && !FAILURE_STATUSES.contains(upstream.statusCode())) {
+                        replica.recordSuccess();
+                        latencySamples.set((int) (latencyCursor.getAndIncrement() % LATENCY_SAMPLES), elapsed);
+                    } else if (replica.recordFailure(breakerFailureThreshold)) {
+                        LOGGER.warn("Circuit breaker opened for replica {}", replica);
+                    }
+                });
+    }
+
+    private HttpRequest buildRequest(HttpServletRequest request, Replica replica, String pathAndQuery,
+                                     HttpRequest.BodyPublisher body) {
+        URI target = URI.create("http://" + replica.getAddress() + ":" + replicaRegistry.getPort() + pathAndQuery);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofMillis(headersTimeoutMs))
+                .method(request.getMethod(), body);
+
+        Enumeration<String> headerNames = request.getHeaderNames();
+        while (headerNames != null && headerNames.hasMoreElements()) {
+            String headerName = headerNames.nextElement();
+            if (SKIPPED_HEADERS.contains(headerName.toLowerCase())) {
+                continue;
+            }
+            Enumeration<String> values = request.getHeaders(headerName);
+            while (values.hasMoreElements()) {
+                builder.header(headerName, values.nextElement());
+            }
+        }
+        return builder.build();
+    }
+
+    private void copyResponse(HttpResponse<InputStream> upstream, HttpServletResponse response) throws IOException {
+        response.setStatus(upstream.statusCode());
+        upstream.headers().map().forEach((name, values) -> {
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                for (String value : values) {
+                    response.addHeader(name, value);
+                }
+            }
+        });
+        upstream.headers().firstValueAsLong("content-length").ifPresent(response::setContentLengthLong);
+
+        try (InputStream body = upstream.body()) {
+            OutputStream out = response.getOutputStream();
+            body.transferTo(out);
+            out.flush();
+        }
+    }
+
+    private static HttpResponse<InputStream> await(CompletableFuture<HttpResponse<InputStream>> future)
+            throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+    }
+
+    private static IOException asIOException(Throwable cause) {
+        return cause instanceof IOException io ? io : new IOException(cause.getMessage(), cause);
+    }
+
+    private static void closeQuietly(HttpResponse<InputStream> upstream) {
+        try {
+            upstream.body().close();
+        } catch (IOException e) {
+            LOGGER.debug("Error discarding hedged response: {}", e.getMessage());
+        }
+    }
+
+    private static boolean hasBody(HttpServletRequest request) {
+        return request.getContentLengthLong() > 0 || request.getHeader("transfer-encoding") != null;
+    }
+
+    private HttpRequest.BodyPublisher bodyPublisher(HttpServletRequest request) {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength == 0 || (contentLength < 0 && request.getHeader("transfer-encoding") == null)) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return request.getInputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return contentLength > 0 ? HttpRequest.BodyPublishers.fromPublisher(stream, contentLength) : stream;
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.platform.device.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monitoring replica known to the HTTP load balancer. The same instance is kept across
+ * registry refreshes for as long as the address resolves, so per-replica state survives.
+ * <p>
+ * Tracks the requests in flight and a peak-sensitive EWMA of the response latency, both
+ * updated lock-free from the request threads.
+ * <p>
+ * Each replica also has a circuit breaker fed by the proxied requests themselves: after
+ * {@code failure-threshold} consecutive failures it opens and the replica gets no traffic
+ * for {@code open-ms}, then a single trial request is let through (half-open) and its
+ * outcome closes or re-opens the breaker. This reacts faster than the periodic health check.
+ */
+public class Replica {
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final String address;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean healthy = true;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Double bits of the latency EWMA in nanoseconds, and the time of its last update
+    private final AtomicLong ewmaNanosBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private final AtomicLong lastUpdateNanos = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger breakerState = new AtomicInteger(CLOSED);
+    private final AtomicInteger breakerFailures = new AtomicInteger();
+    private volatile long breakerOpenedNanos;
+
+    public Replica(String address) {
+        this.address = address;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    void recordHealthCheck(boolean success, int unhealthyThreshold) {
+        if (success) {
+            consecutiveFailures.set(0);
+            healthy = true;
+        } else if (consecutiveFailures.incrementAndGet() >= unhealthyThreshold) {
+            healthy = false;
+        }
+    }
+
+    /**
+     * Marks the start of a request and returns its start time for {@link #endRequest}.
+     */
+    public long beginRequest() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a request and folds its latency into the EWMA. Slower samples replace
+     * the average immediately (peak), faster ones pull it down with a time-based decay.
+     */
+    public void endRequest(long startNanos, long decayNanos) {
+        long now = System.nanoTime();
+        inFlight.decrementAndGet();
+        double sample = now - startNanos;
+
+        while (true) {
+            long currentBits = ewmaNanosBits.get();
+            double current = Double.longBitsToDouble(currentBits);
+            double next;
+            if (sample > current) {
+                next = sample;
+            } else {
+                long elapsed = Math.max(0, now - lastUpdateNanos.get());
+                double weight = Math.exp(-(double) elapsed / decayNanos);
+                next = current * weight + sample * (1.0 - weight);
+            }
+            if (ewmaNanosBits.compareAndSet(currentBits, Double.doubleToRawLongBits(next))) {
+                lastUpdateNanos.set(now);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether the breaker would let a request through now, without claiming the trial slot.
+     */
+    public boolean isAvailable(long openNanos) {
+        return breakerState.get() == CLOSED || System.nanoTime() - breakerOpenedNanos >= openNanos;
+    }
+
+    /**
+     * Claims permission to send a request. Once the open period has elapsed only the first
+     * caller gets the half-open trial; if that trial never reports back another one is
+     * allowed after a further open period.
+     */
+    public boolean tryAcquirePermission(long openNanos) {
+        while (true) {
+            int state = breakerState.get();
+            if (state == CLOSED) {
+                return true;
+            }
+            long openedAt = breakerOpenedNanos;
+            long now = System.nanoTime();
+            if (now - openedAt < openNanos) {
+                return false;
+            }
+            if (breakerState.compareAndSet(state, HALF_OPEN)) {
+                breakerOpenedNanos = now;
+                return true;
+            }
+        }
+    }
+
+    public void recordSuccess() {
+        breakerFailures.set(0);
+        breakerState.set(CLOSED);
+    }
+
+    /**
+     * Counts a failed request; returns true if this failure opened the breaker.
+     */
+    public boolean recordFailure(int failureThreshold) {
+        int state = breakerState.get();
+        if (state == HALF_OPEN) {
+            breakerOpenedNanos = System.nanoTime();
+            return breakerState.compareAndSet(HALF_OPEN, OPEN);
+        }
+        if (breakerFailures.incrementAndGet() < failureThreshold || state != CLOSED) {
+            return false;
+        }
+        // Stamp before publishing OPEN so readers never pair it with a stale open time
+        breakerOpenedNanos = System.nanoTime();
+        return breakerState.compareAndSet(CLOSED, OPEN);
+    }
+
+    public boolean isBreakerOpen() {
+        return breakerState.get() != CLOSED;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getLatencyEwmaNanos() {
+        return Double.longBitsToDouble(ewmaNanosBits.get());
+    }
+
+    /**
+     * Expected cost of sending one more request: latency EWMA scaled by the queue it joins.
+     */
+    public double getPeakEwmaCost() {
+        return (getLatencyEwmaNanos() + 1.0) * (inFlight.get() + 1);
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
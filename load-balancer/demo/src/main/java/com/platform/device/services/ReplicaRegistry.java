@@ -0,0 +1,132 @@
+package com.platform.device.services;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Monitoring replicas discovered through Swarm DNS. DNS is resolved on a background schedule
+ * and replicas are actively health checked; request threads only read the published snapshot.
+ * <p>
+ * A failed or empty DNS answer keeps the last known good list. A replica is ejected after
+ * {@code unhealthy-threshold} consecutive failed health checks and readmitted on the first
+ * successful one.
+ */
+@Service
+public class ReplicaRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRegistry.class);
+
+    @Autowired
+    private HttpClient proxyHttpClient;
+
+    @Value("${loadbalancer.replicas.service-host:tasks.monitoring-microservice}")
+    private String serviceHost;
+
+    @Value("${loadbalancer.replicas.port:8080}")
+    private int port;
+
+    @Value("${loadbalancer.replicas.health-path:/}")
+    private String healthPath;
+
+    @Value("${loadbalancer.replicas.health-timeout-ms:1000}")
+    private long healthTimeoutMs;
+
+    @Value("${loadbalancer.replicas.unhealthy-threshold:2}")
+    private int unhealthyThreshold;
+
+    // All resolved replicas, keyed by address; only written by the refresh thread
+    private volatile Map<String, Replica> known = Map.of();
+
+    private volatile List<Replica> available = List.of();
+
+    /**
+     * Healthy replicas, or every known replica if none passes its health check.
+     */
+    public List<Replica> getReplicas() {
+        return available;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @PostConstruct
+    public void init() {
+        refreshDns();
+    }
+
+    @Scheduled(fixedDelayString = "${loadbalancer.replicas.dns-ttl-ms:5000}")
+    public void refreshDns() {
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(serviceHost);
+        } catch (Exception e) {
+            LOGGER.warn("Error discovering replicas, keeping {} last known: {}", known.size(), e.getMessage());
+            return;
+        }
+        if (addresses.length == 0) {
+            LOGGER.warn("DNS returned no replicas for {}, keeping {} last known", serviceHost, known.size());
+            return;
+        }
+
+        Map<String, Replica> previous = known;
+        Map<String, Replica> resolved = new LinkedHashMap<>();
+        for (InetAddress address : addresses) {
+            String ip = address.getHostAddress();
+            resolved.put(ip, previous.getOrDefault(ip, new Replica(ip)));
+        }
+
+        if (!resolved.keySet().equals(previous.keySet())) {
+            LOGGER.info("Monitoring replicas changed: {}", resolved.keySet());
+        }
+        known = resolved;
+        publish();
+    }
+
+    @Scheduled(fixedDelayString = "${loadbalancer.replicas.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        for (Replica replica : known.values()) {
+            HttpRequest probe = HttpRequest.newBuilder(URI.create("http://" + replica.getAddress() + ":" + port + healthPath))
+                    .timeout(Duration.ofMillis(healthTimeoutMs))
+                    .GET()
+                    .build();
+
+            checks.add(proxyHttpClient.sendAsync(probe, HttpResponse.BodyHandlers.discarding())
+                    // Any answer below 500 means the replica is up, even a 401 or 404 for the probe path
+                    .handle((response, ex) -> ex == null && response.statusCode() < 500)
+                    .thenAccept(success -> {
+                        boolean wasHealthy = replica.isHealthy();
+                        replica.recordHealthCheck(success, unhealthyThreshold);
+                        if (wasHealthy != replica.isHealthy()) {
+                            LOGGER.warn("Replica {} is now {}", replica, replica.isHealthy() ? "healthy" : "ejected");
+                        }
+                    }));
+        }
+
+        CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).join();
+        publish();
+    }
+
+    private void publish() {
+        List<Replica> all = List.copyOf(known.values());
+        List<Replica> healthy = all.stream().filter(Replica::isHealthy).toList();
+        available = healthy.isEmpty() ? all : healthy;
+    }
+}
@@ -0,0 +1,56 @@
+package com.platform.device.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the replica for a proxied request. The strategy is chosen with
+ * {@code loadbalancer.http.selection}:
+ * <ul>
+ *     <li>round-robin: cycles through the replicas in order</li>
+ *     <li>least-outstanding: the replica with fewer requests in flight</li>
+ *     <li>peak-ewma: the replica with the lowest latency EWMA times requests in flight</li>
+ * </ul>
+ * The last two compare two randomly drawn replicas (power of two choices) rather than
+ * scanning all of them, which avoids sending every request to the same momentary best.
+ */
+@Service
+public class ReplicaSelector {
+
+    @Value("${loadbalancer.http.selection:peak-ewma}")
+    private String strategy;
+
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    public Replica select(List<Replica> replicas) {
+        if (replicas.size() == 1) {
+            return replicas.get(0);
+        }
+
+        return switch (strategy) {
+            case "round-robin" -> replicas.get(Math.floorMod(nextIndex.getAndIncrement(), replicas.size()));
+            case "least-outstanding" -> powerOfTwoChoices(replicas, false);
+            default -> powerOfTwoChoices(replicas, true);
+        };
+    }
+
+    private Replica powerOfTwoChoices(List<Replica> replicas, boolean byLatency) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(replicas.size());
+        int second = random.nextInt(replicas.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        Replica a = replicas.get(first);
+        Replica b = replicas.get(second);
+        if (byLatency) {
+            return b.getPeakEwmaCost() < a.getPeakEwmaCost() ? b : a;
+        }
+        return b.getInFlight() < a.getInFlight() ? b : a;
+    }
+}
@@ -0,0 +1,50 @@
+package com.platform.device.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries and hedges to a fraction of the request rate so that a struggling replica
+ * set is not hit with a retry storm on top of its normal load.
+ * <p>
+ * Every proxied request deposits {@code ratio} of a token and every retry or hedge spends a
+ * whole one. The balance starts full and is capped, which allows a short burst of retries
+ * after an idle period.
+ */
+@Service
+public class RetryBudget {
+    // Tokens are kept in thousandths to stay on an AtomicLong
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public RetryBudget(@Value("${loadbalancer.http.retry.budget-ratio:0.1}") double ratio,
+                       @Value("${loadbalancer.http.retry.budget-max:20}") int maxTokens) {
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    public void deposit() {
+        balance.accumulateAndGet(depositPerRequest, (current, deposit) -> Math.min(maxBalance, current + deposit));
+    }
+
+    /**
+     * Spends one token if the budget allows another retry.
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.platform.device.messaging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceIdExtractorTest {
+
+    private static final UUID DEVICE_ID = UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+
+    @Test
+    void readsTheHeaderFirst() {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(DeviceIdExtractor.DEVICE_ID_HEADER, DEVICE_ID.toString());
+        Message message = new Message(json("{\"deviceId\":\"" + UUID.randomUUID() + "\"}"), properties);
+
+        assertEquals(DEVICE_ID, DeviceIdExtractor.extract(message));
+    }
+
+    @Test
+    void malformedHeaderGivesNull() {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(DeviceIdExtractor.DEVICE_ID_HEADER, "not-a-uuid");
+
+        assertNull(DeviceIdExtractor.extract(new Message(new byte[0], properties)));
+    }
+
+    @Test
+    void readsBinaryMeasurements() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(DeviceIdExtractor.BINARY_CONTENT_TYPE);
+
+        assertEquals(DEVICE_ID, DeviceIdExtractor.extract(new Message(binary(DEVICE_ID), properties)));
+    }
+
+    @Test
+    void readsTheFirstDeviceOfABatchIgnoringContentTypeParameters() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(DeviceIdExtractor.BATCH_CONTENT_TYPE + "; version=1");
+        ByteBuffer body = ByteBuffer.allocate(2 * DeviceIdExtractor.BINARY_RECORD_SIZE)
+                .put(binary(DEVICE_ID))
+                .put(binary(UUID.randomUUID()));
+        Message message = new Message(body.array(), properties);
+
+        assertEquals(DEVICE_ID, DeviceIdExtractor.extract(message));
+        assertTrue(DeviceIdExtractor.isBatch(message));
+    }
+
+    @Test
+    void truncatedBinaryGivesNull() {
+        assertNull(DeviceIdExtractor.extractFromBinary(new byte[15]));
+        assertNull(DeviceIdExtractor.extractFromBinary(null));
+    }
+
+    @Test
+    void readsJsonWithWhitespaceAndOtherFields() {
+        String body = "{ \"timestamp\": \"2024-01-01T00:00:00\",\n  \"deviceId\" :\t\"" + DEVICE_ID + "\", \"value\": 1.5 }";
+
+        assertEquals(DEVICE_ID, DeviceIdExtractor.extractFromJson(json(body)));
+        assertEquals(DEVICE_ID, DeviceIdExtractor.extractFromJson(json(body.toUpperCase().replace("DEVICEID", "deviceId"))));
+    }
+
+    @Test
+    void malformedJsonGivesNull() {
+        assertNull(DeviceIdExtractor.extractFromJson(json("{\"value\": 1.5}")));
+        assertNull(DeviceIdExtractor.extractFromJson(json("{\"deviceId\": null}")));
+        assertNull(DeviceIdExtractor.extractFromJson(json("{\"deviceId\": \"3f2504e0-4f89-11d3\"}")));
+        assertNull(DeviceIdExtractor.extractFromJson(json("{\"deviceId\": \"3f2504e0x4f89-11d3-9a0c-0305e82c3301\"}")));
+        assertNull(DeviceIdExtractor.extractFromJson(json("{\"deviceId\": \"zf2504e0-4f89-11d3-9a0c-0305e82c3301\"}")));
+        assertNull(DeviceIdExtractor.extractFromJson(null));
+    }
+
+    @Test
+    void plainMessagesAreNotBatches() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(DeviceIdExtractor.BINARY_CONTENT_TYPE);
+
+        assertFalse(DeviceIdExtractor.isBatch(new Message(binary(DEVICE_ID), properties)));
+    }
+
+    private static byte[] binary(UUID deviceId) {
+        return ByteBuffer.allocate(DeviceIdExtractor.BINARY_RECORD_SIZE)
+                .putLong(deviceId.getMostSignificantBits())
+                .putLong(deviceId.getLeastSignificantBits())
+                .putLong(1_700_000_000_000_000L)
+                .putDouble(1.5)
+                .array();
+    }
+
+    private static byte[] json(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package com.platform.device.messaging;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageLoadBalancerBackpressureTest {
+
+    private static final int MESSAGES = 200;
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final IngestQueueTopology topology = mock(IngestQueueTopology.class);
+    private final Channel channel = mock(Channel.class);
+    private final MessageLoadBalancer balancer = new MessageLoadBalancer(10_000);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(balancer, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(balancer, "ingestQueueTopology", topology);
+        ReflectionTestUtils.setField(balancer, "routingMode", "consistent-hash");
+        ReflectionTestUtils.setField(balancer, "maxBackpressureMs", 30_000L);
+        ReflectionTestUtils.setField(balancer, "maxParkedPerQueue", 1000);
+    }
+
+    @Test
+    void keepsForwardingToOtherQueuesWhileOneIsOverloaded() {
+        when(topology.snapshot()).thenReturn(snapshot(true));
+
+        forwardMessages();
+
+        List<String> sent = sentQueues();
+        assertTrue(sent.size() > MESSAGES / 4, "forwarded " + sent.size());
+        assertTrue(sent.stream().allMatch("ingest.2"::equals), "forwarded to " + sent);
+
+        when(topology.snapshot()).thenReturn(snapshot(false));
+        balancer.releaseParked();
+
+        assertEquals(MESSAGES, sentQueues().size());
+    }
+
+    @Test
+    void forwardsTheOldestParkedMessageOnceTheQueueIsFull() {
+        ReflectionTestUtils.setField(balancer, "maxParkedPerQueue", 5);
+        when(topology.snapshot()).thenReturn(snapshot(true));
+
+        forwardMessages();
+
+        long toOverloaded = sentQueues().stream().filter("ingest.1"::equals).count();
+        long toHealthy = sentQueues().stream().filter("ingest.2"::equals).count();
+        assertEquals(MESSAGES - 5, toOverloaded + toHealthy);
+    }
+
+    @Test
+    void releasesMessagesParkedLongerThanTheMaximum() throws InterruptedException {
+        ReflectionTestUtils.setField(balancer, "maxBackpressureMs", 1L);
+        when(topology.snapshot()).thenReturn(snapshot(true));
+        forwardMessages();
+
+        Thread.sleep(5);
+        balancer.releaseParked();
+
+        assertEquals(MESSAGES, sentQueues().size());
+    }
+
+    private void forwardMessages() {
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageProperties properties = new MessageProperties();
+            properties.setDeliveryTag(i + 1);
+            properties.setHeader(DeviceIdExtractor.DEVICE_ID_HEADER, UUID.randomUUID().toString());
+            balancer.handleDeviceMeasurement(new Message(new byte[0], properties), channel);
+        }
+    }
+
+    private List<String> sentQueues() {
+        ArgumentCaptor<String> queues = ArgumentCaptor.forClass(String.class);
+        verify(rabbitTemplate, atLeast(0)).send(eq(""), queues.capture(), any(Message.class), any(CorrelationData.class));
+        return queues.getAllValues();
+    }
+
+    private static IngestQueueTopology.Snapshot snapshot(boolean firstOverloaded) {
+        return new IngestQueueTopology.Snapshot(List.of(
+                new IngestQueueTopology.IngestQueue("ingest.1", 1, 0, 1, 1, firstOverloaded, new AtomicLong()),
+                new IngestQueueTopology.IngestQueue("ingest.2", 2, 0, 1, 1, false, new AtomicLong())));
+    }
+}
@@ -0,0 +1,62 @@
+package com.platform.device.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageLoadBalancerTest {
+
+    @Test
+    void jumpConsistentHashStaysInRangeAndIsDeterministic() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextLong();
+            int buckets = 1 + random.nextInt(64);
+            int bucket = MessageLoadBalancer.jumpConsistentHash(key, buckets);
+            assertTrue(bucket >= 0 && bucket < buckets);
+            assertEquals(bucket, MessageLoadBalancer.jumpConsistentHash(key, buckets));
+        }
+    }
+
+    @Test
+    void jumpConsistentHashWithOneBucketAlwaysReturnsIt() {
+        assertEquals(0, MessageLoadBalancer.jumpConsistentHash(Long.MIN_VALUE, 1));
+        assertEquals(0, MessageLoadBalancer.jumpConsistentHash(0, 1));
+        assertEquals(0, MessageLoadBalancer.jumpConsistentHash(Long.MAX_VALUE, 1));
+    }
+
+    @Test
+    void jumpConsistentHashOnlyMovesKeysToTheNewBucket() {
+        Random random = new Random(7);
+        int keys = 20_000;
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            long key = random.nextLong();
+            int before = MessageLoadBalancer.jumpConsistentHash(key, 4);
+            int after = MessageLoadBalancer.jumpConsistentHash(key, 5);
+            if (before != after) {
+                assertEquals(4, after);
+                moved++;
+            }
+        }
+        // About a fifth of the keys move to the added bucket
+        assertTrue(Math.abs(moved - keys / 5) < keys / 50, "moved " + moved);
+    }
+
+    @Test
+    void jumpConsistentHashSpreadsKeysEvenly() {
+        Random random = new Random(11);
+        int buckets = 8;
+        int keys = 80_000;
+        int[] counts = new int[buckets];
+        for (int i = 0; i < keys; i++) {
+            counts[MessageLoadBalancer.jumpConsistentHash(random.nextLong(), buckets)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - keys / buckets) < keys / buckets / 10, "bucket count " + count);
+        }
+    }
+}
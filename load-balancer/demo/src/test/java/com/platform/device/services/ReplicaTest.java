@@ -0,0 +1,84 @@
+package com.platform.device.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaTest {
+
+    private static final int THRESHOLD = 3;
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final long SHORT_OPEN_NANOS = 50_000_000L;
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        Replica replica = new Replica("monitoring:8080");
+
+        assertFalse(replica.recordFailure(THRESHOLD));
+        assertFalse(replica.recordFailure(THRESHOLD));
+        assertTrue(replica.tryAcquirePermission(NEVER));
+        assertTrue(replica.recordFailure(THRESHOLD));
+
+        assertTrue(replica.isBreakerOpen());
+        assertFalse(replica.isAvailable(NEVER));
+        assertFalse(replica.tryAcquirePermission(NEVER));
+        // Already open, further failures do not report opening it again
+        assertFalse(replica.recordFailure(THRESHOLD));
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        Replica replica = new Replica("monitoring:8080");
+
+        replica.recordFailure(THRESHOLD);
+        replica.recordFailure(THRESHOLD);
+        replica.recordSuccess();
+        assertFalse(replica.recordFailure(THRESHOLD));
+        assertFalse(replica.recordFailure(THRESHOLD));
+
+        assertFalse(replica.isBreakerOpen());
+    }
+
+    @Test
+    void letsASingleTrialThroughAfterTheOpenPeriod() throws InterruptedException {
+        Replica replica = open();
+        assertFalse(replica.tryAcquirePermission(SHORT_OPEN_NANOS));
+
+        Thread.sleep(SHORT_OPEN_NANOS / 1_000_000L + 20);
+        assertTrue(replica.isAvailable(SHORT_OPEN_NANOS));
+        assertTrue(replica.tryAcquirePermission(SHORT_OPEN_NANOS));
+        assertFalse(replica.tryAcquirePermission(SHORT_OPEN_NANOS));
+        assertTrue(replica.isBreakerOpen());
+    }
+
+    @Test
+    void successfulTrialCloses() {
+        Replica replica = open();
+        assertTrue(replica.tryAcquirePermission(0));
+
+        replica.recordSuccess();
+
+        assertFalse(replica.isBreakerOpen());
+        assertTrue(replica.tryAcquirePermission(NEVER));
+    }
+
+    @Test
+    void failedTrialReopens() {
+        Replica replica = open();
+        assertTrue(replica.tryAcquirePermission(0));
+
+        assertTrue(replica.recordFailure(THRESHOLD));
+
+        assertTrue(replica.isBreakerOpen());
+        assertFalse(replica.tryAcquirePermission(NEVER));
+    }
+
+    private static Replica open() {
+        Replica replica = new Replica("monitoring:8080");
+        for (int i = 0; i < THRESHOLD; i++) {
+            replica.recordFailure(THRESHOLD);
+        }
+        return replica;
+    }
+}
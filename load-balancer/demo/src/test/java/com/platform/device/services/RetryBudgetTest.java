@@ -0,0 +1,46 @@
+package com.platform.device.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void startsFullAndRunsDry() {
+        RetryBudget budget = new RetryBudget(0.1, 3);
+
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void depositsEarnRetriesAtTheRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 1);
+        assertTrue(budget.tryWithdraw());
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertFalse(budget.tryWithdraw());
+
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    void balanceIsCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+}
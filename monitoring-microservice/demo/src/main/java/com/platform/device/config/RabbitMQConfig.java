@@ -3,11 +3,13 @@ package com.platform.device.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -17,6 +19,12 @@ public class RabbitMQConfig {
     @Value("${REPLICA_ID:1}")
     private String replicaId;
 
+    @Value("${ingest.listener.batch-size:500}")
+    private int ingestBatchSize;
+
+    @Value("${ingest.listener.receive-timeout-ms:200}")
+    private long ingestReceiveTimeoutMs;
+
     public static final String USER_EVENTS_EXCHANGE = "user.events.exchange";
     public static final String USER_CREATE_ROUTING_KEY = "user.create";
     public static final String USER_DELETE_ROUTING_KEY = "user.delete";
@@ -36,6 +44,14 @@ public class RabbitMQConfig {
     public static final String OVERCONSUMPTION_NOTIFICATION_ROUTING_KEY = "overconsumption.notification";
     public static final String WEBSOCKET_OVERCONSUMPTION_QUEUE = "websocket.overconsumption.queue";
 
+    // Fanout to every monitoring replica when a closed day changes, so cached responses are dropped
+    public static final String CONSUMPTION_CACHE_INVALIDATION_EXCHANGE = "monitoring.cache.invalidation.exchange";
+
+    // Fanout of each replica's realtime consumption subscriptions, so every replica knows who watches what
+    public static final String REALTIME_SUBSCRIPTIONS_EXCHANGE = "monitoring.realtime.subscriptions.exchange";
+
+    public static final String INGEST_BATCH_CONTAINER_FACTORY = "ingestBatchContainerFactory";
+
     @Bean
     public Queue monitoringUserQueue() {
         return QueueBuilder.durable(MONITORING_USER_QUEUE).build();
@@ -59,6 +75,31 @@ public class RabbitMQConfig {
         return QueueBuilder.durable(queueName).build();
     }
 
+    /**
+     * Per-replica queue that receives every device event, so each replica's in-memory
+     * device registry stays in sync (monitoring.device.queue is shared between replicas).
+     */
+    @Bean
+    public Queue deviceRegistryQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * Per-replica queue for daily consumption cache invalidations.
+     */
+    @Bean
+    public Queue consumptionCacheInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    /**
+     * Per-replica queue for the realtime subscription snapshots of the other replicas.
+     */
+    @Bean
+    public Queue realtimeSubscriptionsQueue() {
+        return new AnonymousQueue();
+    }
+
     @Bean
     public Queue websocketOverconsumptionQueue() {
         return QueueBuilder.durable(WEBSOCKET_OVERCONSUMPTION_QUEUE).build();
@@ -84,6 +125,16 @@ public class RabbitMQConfig {
         return new TopicExchange(OVERCONSUMPTION_NOTIFICATIONS_EXCHANGE);
     }
 
+    @Bean
+    public FanoutExchange consumptionCacheInvalidationExchange() {
+        return new FanoutExchange(CONSUMPTION_CACHE_INVALIDATION_EXCHANGE);
+    }
+
+    @Bean
+    public FanoutExchange realtimeSubscriptionsExchange() {
+        return new FanoutExchange(REALTIME_SUBSCRIPTIONS_EXCHANGE);
+    }
+
     @Bean
     public Binding monitoringUserCreateBinding() {
         return BindingBuilder
@@ -116,6 +167,36 @@ public class RabbitMQConfig {
                 .with(DEVICE_DELETE_ROUTING_KEY);
     }
 
+    @Bean
+    public Binding deviceRegistryCreateBinding() {
+        return BindingBuilder
+                .bind(deviceRegistryQueue())
+                .to(deviceEventsExchange())
+                .with(DEVICE_CREATE_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding deviceRegistryDeleteBinding() {
+        return BindingBuilder
+                .bind(deviceRegistryQueue())
+                .to(deviceEventsExchange())
+                .with(DEVICE_DELETE_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding consumptionCacheInvalidationBinding() {
+        return BindingBuilder
+                .bind(consumptionCacheInvalidationQueue())
+                .to(consumptionCacheInvalidationExchange());
+    }
+
+    @Bean
+    public Binding realtimeSubscriptionsBinding() {
+        return BindingBuilder
+                .bind(realtimeSubscriptionsQueue())
+                .to(realtimeSubscriptionsExchange());
+    }
+
     // Note: No binding for measurements queue to the exchange
     // The load balancer directly pushes to the ingest queues
 
@@ -134,6 +215,24 @@ public class RabbitMQConfig {
         return new Jackson2JsonMessageConverter(objectMapper);
     }
 
+    /**
+     * Listener container for the ingest queue: delivers up to ingestBatchSize measurements
+     * per invocation, or whatever arrived within the receive timeout.
+     */
+    @Bean(name = INGEST_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory ingestBatchContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(ingestBatchSize);
+        factory.setReceiveTimeout(ingestReceiveTimeoutMs);
+        factory.setPrefetchCount(ingestBatchSize);
+        return factory;
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
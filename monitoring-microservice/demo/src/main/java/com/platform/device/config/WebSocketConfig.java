@@ -37,6 +37,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws/consumption")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+
+        // Plain WebSocket, without the SockJS framing; Tomcat negotiates permessage-deflate if the client offers it
+        registry.addEndpoint("/ws/consumption-native")
+                .setAllowedOriginPatterns("*");
     }
 
     @Override
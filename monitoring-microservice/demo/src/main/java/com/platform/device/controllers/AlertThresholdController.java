@@ -0,0 +1,51 @@
+package com.platform.device.controllers;
+
+import com.platform.device.dtos.AlertThresholdDTO;
+import com.platform.device.services.AlertThresholdService;
+import com.platform.device.services.SecurityService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@Controller
+@RequestMapping("/alerts/thresholds")
+public class AlertThresholdController {
+    @Autowired
+    private AlertThresholdService alertThresholdService;
+
+    @Autowired
+    private SecurityService securityService;
+
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<List<AlertThresholdDTO>> getAllThresholds(HttpServletRequest request) {
+        // ADMIN only
+        securityService.requireAdmin(request);
+        return ResponseEntity.ok(alertThresholdService.getAllThresholds());
+    }
+
+    @PutMapping
+    @ResponseBody
+    public ResponseEntity<AlertThresholdDTO> saveThreshold(@RequestBody AlertThresholdDTO threshold, HttpServletRequest request) {
+        // ADMIN only
+        securityService.requireAdmin(request);
+        return ResponseEntity.ok(alertThresholdService.saveThreshold(threshold));
+    }
+
+    @DeleteMapping
+    @ResponseBody
+    public ResponseEntity<String> deleteThreshold(
+            @RequestParam(required = false) UUID deviceId,
+            @RequestParam(required = false) String deviceType,
+            HttpServletRequest request) {
+        // ADMIN only
+        securityService.requireAdmin(request);
+        alertThresholdService.deleteThreshold(deviceId, deviceType);
+        return ResponseEntity.ok("Deletion Successful");
+    }
+}
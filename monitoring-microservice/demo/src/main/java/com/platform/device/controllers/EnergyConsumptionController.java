@@ -1,33 +1,75 @@
 package com.platform.device.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.platform.device.dtos.BatchConsumptionRequestDTO;
+import com.platform.device.dtos.ConsumptionGranularity;
 import com.platform.device.dtos.DailyEnergyConsumptionDTO;
 import com.platform.device.entities.Role;
+import com.platform.device.services.DailyConsumptionCache;
+import com.platform.device.services.DailyConsumptionCache.CachedResponse;
+import com.platform.device.services.EnergyConsumptionRollupService;
 import com.platform.device.services.HourlyEnergyConsumptionService;
+import com.platform.device.services.RawMeasurementStore;
 import com.platform.device.services.SecurityService;
 import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.UUID;
 
 @Controller
 @RequestMapping("/energy-consumption")
 public class EnergyConsumptionController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnergyConsumptionController.class);
 
     @Autowired
     private HourlyEnergyConsumptionService hourlyEnergyConsumptionService;
 
+    @Autowired
+    private EnergyConsumptionRollupService energyConsumptionRollupService;
+
+    @Autowired
+    private DailyConsumptionCache dailyConsumptionCache;
+
+    @Autowired
+    private RawMeasurementStore rawMeasurementStore;
+
     @Autowired
     private SecurityService securityService;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Value("${energy.consumption.batch.max-devices:500}")
+    private int batchMaxDevices;
+
+    @Value("${energy.consumption.batch.max-days:31}")
+    private int batchMaxDays;
+
+    @Value("${energy.consumption.raw-store.max-days:31}")
+    private int rawMaxDays;
+
+    @Value("${energy.consumption.raw-store.max-points:10000}")
+    private int rawMaxPoints;
+
     @GetMapping("/daily")
     @ResponseBody
     public ResponseEntity<?> getDailyConsumption(
@@ -35,26 +77,136 @@ public class EnergyConsumptionController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
             HttpServletRequest request) {
 
-        System.out.println("Received daily consumption request for device: " + deviceId + ", date: " + date);
+        LOGGER.debug("Received daily consumption request for device {}, date {}", deviceId, date);
 
         // USER and ADMIN can access
         securityService.requireRole(request, Role.USER, Role.ADMIN);
 
         try {
-            DailyEnergyConsumptionDTO consumption = hourlyEnergyConsumptionService.getDailyConsumption(deviceId, date);
-            System.out.println("DTO Created: " + consumption);
+            // Past days are served from the cache of serialized responses
+            CachedResponse cached = dailyConsumptionCache.get(deviceId, date);
+            if (cached == null) {
+                long stamp = dailyConsumptionCache.invalidationStamp();
+                DailyEnergyConsumptionDTO consumption = hourlyEnergyConsumptionService.getDailyConsumption(deviceId, date);
 
-            // Manual serialization to catch errors
-            String json = objectMapper.writeValueAsString(consumption);
+                // Manual serialization to catch errors
+                cached = CachedResponse.of(objectMapper.writeValueAsBytes(consumption));
+                dailyConsumptionCache.put(deviceId, date, cached, stamp);
+            }
 
+            // The ETag lets clients revalidate with If-None-Match and get a 304 without a body
             return ResponseEntity.ok()
-                    .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
-                    .body(json);
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(cached.etag())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(cached.body());
 
         } catch (Exception e) {
-            System.err.println("Error processing/serializing daily consumption request: " + e.getMessage());
-            e.printStackTrace();
+            LOGGER.error("Error processing/serializing daily consumption request for device {}, date {}: {}",
+                    deviceId, date, e.getMessage(), e);
             return ResponseEntity.status(500).body("Error: " + e.getMessage());
         }
     }
+
+    /**
+     * Consumption per day or per month over a date range, read from the rollup tables.
+     */
+    @GetMapping("/range")
+    @ResponseBody
+    public ResponseEntity<?> getConsumptionRange(
+            @RequestParam UUID deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "day") String granularity,
+            HttpServletRequest request) {
+
+        // USER and ADMIN can access
+        securityService.requireRole(request, Role.USER, Role.ADMIN);
+
+        ConsumptionGranularity parsedGranularity;
+        try {
+            parsedGranularity = ConsumptionGranularity.valueOf(granularity.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: granularity must be day or month");
+        }
+        if (endDate.isBefore(startDate)) {
+            return ResponseEntity.badRequest().body("Error: endDate is before startDate");
+        }
+
+        return ResponseEntity.ok(energyConsumptionRollupService.getConsumption(deviceId, startDate, endDate, parsedGranularity));
+    }
+
+    /**
+     * Raw measurements of a device over a time range, downsampled to at most maxPoints buckets.
+     * Only available when the raw measurement store is enabled.
+     */
+    @GetMapping("/raw")
+    @ResponseBody
+    public ResponseEntity<?> getRawSeries(
+            @RequestParam UUID deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "500") int maxPoints,
+            HttpServletRequest request) {
+
+        // USER and ADMIN can access
+        securityService.requireRole(request, Role.USER, Role.ADMIN);
+
+        if (!rawMeasurementStore.isEnabled()) {
+            return ResponseEntity.status(404).body("Error: the raw measurement store is disabled");
+        }
+        if (end.isBefore(start) || Duration.between(start, end).compareTo(Duration.ofDays(rawMaxDays)) > 0) {
+            return ResponseEntity.badRequest().body("Error: the time range must span at most " + rawMaxDays + " days");
+        }
+        if (maxPoints < 1 || maxPoints > rawMaxPoints) {
+            return ResponseEntity.badRequest().body("Error: maxPoints must be between 1 and " + rawMaxPoints);
+        }
+
+        return ResponseEntity.ok(rawMeasurementStore.getSeries(deviceId, start, end, maxPoints));
+    }
+
+    /**
+     * Daily consumption of several devices over a date range in one request. The body is a JSON
+     * array of daily consumptions grouped by device, streamed a chunk of devices at a time.
+     */
+    @PostMapping("/batch")
+    @ResponseBody
+    public ResponseEntity<?> getBatchConsumption(@RequestBody BatchConsumptionRequestDTO batchRequest,
+                                                 HttpServletRequest request) {
+
+        // USER and ADMIN can access
+        securityService.requireRole(request, Role.USER, Role.ADMIN);
+
+        LocalDate startDate = batchRequest.getStartDate();
+        LocalDate endDate = batchRequest.getEndDate();
+        if (batchRequest.getDeviceIds() == null || batchRequest.getDeviceIds().isEmpty()
+                || startDate == null || endDate == null) {
+            return ResponseEntity.badRequest().body("Error: deviceIds, startDate and endDate are required");
+        }
+        Set<UUID> deviceIds = new LinkedHashSet<>(batchRequest.getDeviceIds());
+        if (deviceIds.size() > batchMaxDevices) {
+            return ResponseEntity.badRequest().body("Error: at most " + batchMaxDevices + " devices per request");
+        }
+        if (endDate.isBefore(startDate) || ChronoUnit.DAYS.between(startDate, endDate) >= batchMaxDays) {
+            return ResponseEntity.badRequest().body("Error: the date range must span 1 to " + batchMaxDays + " days");
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.writeStartArray();
+                hourlyEnergyConsumptionService.forEachDailyConsumption(deviceIds, startDate, endDate, consumption -> {
+                    try {
+                        generator.writeObject(consumption);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 }
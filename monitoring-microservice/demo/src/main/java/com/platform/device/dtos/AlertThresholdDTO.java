@@ -0,0 +1,22 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@lombok.ToString
+public class AlertThresholdDTO {
+    // Exactly one of deviceId and deviceType
+    private UUID deviceId;
+    private String deviceType;
+    private Double hourlyThreshold;
+    private Double windowThreshold;
+    private Double rateThreshold;
+}
@@ -0,0 +1,21 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@lombok.ToString
+public class BatchConsumptionRequestDTO {
+    private List<UUID> deviceIds;
+    private LocalDate startDate;
+    private LocalDate endDate;
+}
@@ -0,0 +1,15 @@
+package com.platform.device.dtos;
+
+import java.time.LocalDate;
+
+public enum ConsumptionGranularity {
+    DAY,
+    MONTH;
+
+    /**
+     * Start of the period the given date falls in.
+     */
+    public LocalDate periodStart(LocalDate date) {
+        return this == MONTH ? date.withDayOfMonth(1) : date;
+    }
+}
@@ -0,0 +1,24 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@lombok.ToString
+public class ConsumptionRangeDTO {
+    private UUID deviceId;
+    private ConsumptionGranularity granularity;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Double totalConsumption;
+    private List<PeriodConsumptionDTO> consumptions;
+}
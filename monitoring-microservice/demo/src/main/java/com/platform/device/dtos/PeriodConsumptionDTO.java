@@ -0,0 +1,19 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@lombok.ToString
+public class PeriodConsumptionDTO {
+    // First day of the day or month the consumption belongs to
+    private LocalDate periodStart;
+    private Double consumption;
+}
@@ -0,0 +1,23 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@lombok.ToString
+public class RawSeriesDTO {
+    private UUID deviceId;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private Long bucketMillis;
+    private List<RawSeriesPointDTO> points;
+}
@@ -0,0 +1,22 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@lombok.ToString
+public class RawSeriesPointDTO {
+    // Start of the bucket
+    private LocalDateTime timestamp;
+    private Double min;
+    private Double max;
+    private Double avg;
+    private Integer count;
+}
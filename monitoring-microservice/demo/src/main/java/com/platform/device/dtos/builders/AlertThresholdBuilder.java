@@ -0,0 +1,17 @@
+package com.platform.device.dtos.builders;
+
+import com.platform.device.dtos.AlertThresholdDTO;
+import com.platform.device.entities.AlertThreshold;
+
+public class AlertThresholdBuilder {
+
+    public static AlertThresholdDTO fromPersistance(AlertThreshold threshold) {
+        return new AlertThresholdDTO(threshold.getDeviceId(), threshold.getDeviceType(),
+                threshold.getHourlyThreshold(), threshold.getWindowThreshold(), threshold.getRateThreshold());
+    }
+
+    public static AlertThreshold toAlertThresholdEntity(AlertThresholdDTO thresholdDTO) {
+        return new AlertThreshold(null, thresholdDTO.getDeviceId(), thresholdDTO.getDeviceType(),
+                thresholdDTO.getHourlyThreshold(), thresholdDTO.getWindowThreshold(), thresholdDTO.getRateThreshold());
+    }
+}
@@ -0,0 +1,49 @@
+package com.platform.device.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * Overconsumption thresholds of one device or of every device of a type; exactly one of
+ * deviceId and deviceType is set. A null threshold falls back to the type, then to the
+ * configured default.
+ */
+@Entity
+@Table(name = "alert_threshold",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_alert_threshold_device", columnNames = "device_id"),
+                @UniqueConstraint(name = "uk_alert_threshold_type", columnNames = "device_type")})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class AlertThreshold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "device_id")
+    private UUID deviceId;
+
+    @Column(name = "device_type")
+    private String deviceType;
+
+    // Hourly total
+    @Column(name = "hourly_threshold")
+    private Double hourlyThreshold;
+
+    // Sum over the sliding window
+    @Column(name = "window_threshold")
+    private Double windowThreshold;
+
+    // Increase of the measured value per minute
+    @Column(name = "rate_threshold")
+    private Double rateThreshold;
+}
@@ -0,0 +1,39 @@
+package com.platform.device.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Total consumption of a device per day, kept in step with hourly_energy_consumption.
+ */
+@Entity
+@Table(name = "daily_energy_consumption",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_daily_energy_consumption_device_date",
+                columnNames = {"device_id", "consumption_date"}))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class DailyEnergyConsumption {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "device_id", nullable = false)
+    private UUID deviceId;
+
+    @Column(name = "consumption_date", nullable = false)
+    private LocalDate consumptionDate;
+
+    @Column(name = "total_energy_consumption", nullable = false)
+    private Double totalEnergyConsumption;
+}
@@ -9,8 +9,18 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+/**
+ * Total consumption of a device per hour. The table is range partitioned by month on
+ * hour_timestamp (see HourlyConsumptionPartitionManager), so its primary key is
+ * (id, hour_timestamp) in the database and the unique constraint also serves as the
+ * per-partition (device_id, hour_timestamp) index. The constraint is ensured on startup by
+ * the partition manager rather than left to the schema update.
+ */
 @Entity
-@Table(name = "hourly_energy_consumption")
+@Table(name = "hourly_energy_consumption",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_hourly_energy_consumption_device_hour",
+                columnNames = {"device_id", "hour_timestamp"}))
 @Getter
 @Setter
 @AllArgsConstructor
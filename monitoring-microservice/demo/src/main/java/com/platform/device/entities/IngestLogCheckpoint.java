@@ -0,0 +1,35 @@
+package com.platform.device.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Position up to which a replica's ingest log has been applied to the database. Written in
+ * the same transaction as the hourly totals, so a replay after a restart never applies a
+ * measurement twice. The log id tells which log the position belongs to.
+ */
+@Entity
+@Table(name = "ingest_log_checkpoint")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestLogCheckpoint {
+
+    @Id
+    @Column(name = "replica_id")
+    private String replicaId;
+
+    // Null for checkpoints written before log ids existed
+    @Column(name = "log_id")
+    private String logId;
+
+    @Column(name = "segment", nullable = false)
+    private Long segment;
+
+    @Column(name = "segment_offset", nullable = false)
+    private Integer segmentOffset;
+}
@@ -0,0 +1,39 @@
+package com.platform.device.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Total consumption of a device per calendar month, keyed by the first day of the month.
+ */
+@Entity
+@Table(name = "monthly_energy_consumption",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_monthly_energy_consumption_device_month",
+                columnNames = {"device_id", "month_start"}))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class MonthlyEnergyConsumption {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "device_id", nullable = false)
+    private UUID deviceId;
+
+    @Column(name = "month_start", nullable = false)
+    private LocalDate monthStart;
+
+    @Column(name = "total_energy_consumption", nullable = false)
+    private Double totalEnergyConsumption;
+}
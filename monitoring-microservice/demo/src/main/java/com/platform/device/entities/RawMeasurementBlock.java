@@ -0,0 +1,48 @@
+package com.platform.device.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Gorilla-compressed raw measurements of one device on one day. Replicas write a block once it
+ * is full, old enough or its day is over; blocks of a closed day are compacted into a single one.
+ */
+@Entity
+@Table(name = "raw_measurement_block",
+        indexes = @Index(name = "idx_raw_measurement_block_device_date", columnList = "device_id, block_date"))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RawMeasurementBlock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "device_id", nullable = false)
+    private UUID deviceId;
+
+    @Column(name = "block_date", nullable = false)
+    private LocalDate blockDate;
+
+    @Column(name = "first_timestamp", nullable = false)
+    private LocalDateTime firstTimestamp;
+
+    @Column(name = "last_timestamp", nullable = false)
+    private LocalDateTime lastTimestamp;
+
+    @Column(name = "point_count", nullable = false)
+    private Integer pointCount;
+
+    @Column(name = "encoded", nullable = false)
+    private byte[] encoded;
+}
@@ -0,0 +1,16 @@
+package com.platform.device.messaging;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DailyConsumptionInvalidationMessage {
+    private UUID deviceId;
+    private LocalDate date;
+}
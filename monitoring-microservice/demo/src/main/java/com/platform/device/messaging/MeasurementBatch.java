@@ -0,0 +1,68 @@
+package com.platform.device.messaging;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Measurements of one ingest batch kept in primitive arrays, so decoding a binary message
+ * does not allocate per measurement.
+ */
+public final class MeasurementBatch {
+    private long[] deviceIdMostSignificantBits;
+    private long[] deviceIdLeastSignificantBits;
+    private long[] epochMicros;
+    private double[] values;
+    private int size;
+
+    public MeasurementBatch(int capacity) {
+        int initial = Math.max(1, capacity);
+        deviceIdMostSignificantBits = new long[initial];
+        deviceIdLeastSignificantBits = new long[initial];
+        epochMicros = new long[initial];
+        values = new double[initial];
+    }
+
+    public void add(long msb, long lsb, long timestampMicros, double value) {
+        if (size == values.length) {
+            int capacity = size * 2;
+            deviceIdMostSignificantBits = Arrays.copyOf(deviceIdMostSignificantBits, capacity);
+            deviceIdLeastSignificantBits = Arrays.copyOf(deviceIdLeastSignificantBits, capacity);
+            epochMicros = Arrays.copyOf(epochMicros, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        deviceIdMostSignificantBits[size] = msb;
+        deviceIdLeastSignificantBits[size] = lsb;
+        epochMicros[size] = timestampMicros;
+        values[size] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long deviceIdMostSignificantBits(int index) {
+        return deviceIdMostSignificantBits[index];
+    }
+
+    public long deviceIdLeastSignificantBits(int index) {
+        return deviceIdLeastSignificantBits[index];
+    }
+
+    public long epochMicros(int index) {
+        return epochMicros[index];
+    }
+
+    public double value(int index) {
+        return values[index];
+    }
+
+    public UUID deviceId(int index) {
+        return new UUID(deviceIdMostSignificantBits[index], deviceIdLeastSignificantBits[index]);
+    }
+
+    public LocalDateTime timestamp(int index) {
+        return MeasurementWireFormat.toLocalDateTime(epochMicros[index]);
+    }
+}
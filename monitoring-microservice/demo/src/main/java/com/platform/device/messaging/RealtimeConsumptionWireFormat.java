@@ -0,0 +1,48 @@
+package com.platform.device.messaging;
+
+import com.platform.device.dtos.RealtimeConsumptionDTO;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+
+/**
+ * Fixed-layout binary encoding of a {@link RealtimeConsumptionDTO}, sent as a binary STOMP
+ * frame to clients subscribed to the binary realtime destination instead of the JSON one.
+ * <p>
+ * Layout, big-endian, 48 bytes: device id most and least significant bits (8 + 8), timestamp
+ * (8), consumption (8), hour timestamp (8), hourly total (8). Timestamps are microseconds
+ * since the epoch as in {@link MeasurementWireFormat}, values IEEE 754 doubles with NaN for
+ * null.
+ */
+public final class RealtimeConsumptionWireFormat {
+
+    public static final String CONTENT_TYPE = "application/x-realtime-consumption";
+    public static final int RECORD_SIZE = 48;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+
+    private RealtimeConsumptionWireFormat() {
+    }
+
+    public static byte[] encode(RealtimeConsumptionDTO update) {
+        byte[] body = new byte[RECORD_SIZE];
+        LONG.set(body, 0, update.getDeviceId().getMostSignificantBits());
+        LONG.set(body, 8, update.getDeviceId().getLeastSignificantBits());
+        LONG.set(body, 16, toEpochMicros(update.getTimestamp()));
+        DOUBLE.set(body, 24, toDouble(update.getConsumption()));
+        LONG.set(body, 32, toEpochMicros(update.getHourTimestamp()));
+        DOUBLE.set(body, 40, toDouble(update.getHourlyTotal()));
+        return body;
+    }
+
+    private static long toEpochMicros(LocalDateTime timestamp) {
+        return timestamp != null ? MeasurementWireFormat.toEpochMicros(timestamp) : Long.MIN_VALUE;
+    }
+
+    private static double toDouble(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+}
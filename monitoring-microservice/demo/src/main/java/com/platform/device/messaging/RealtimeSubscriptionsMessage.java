@@ -0,0 +1,18 @@
+package com.platform.device.messaging;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Every realtime consumption routing key one replica currently has STOMP subscribers for.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RealtimeSubscriptionsMessage {
+    private String replicaId;
+    private Set<String> routingKeys;
+}
@@ -0,0 +1,18 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.AlertThreshold;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface AlertThresholdRepository extends CrudRepository<AlertThreshold, UUID> {
+    List<AlertThreshold> findAll();
+
+    Optional<AlertThreshold> findByDeviceId(UUID deviceId);
+
+    Optional<AlertThreshold> findByDeviceType(String deviceType);
+}
@@ -0,0 +1,18 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.DailyEnergyConsumption;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DailyEnergyConsumptionRepository extends CrudRepository<DailyEnergyConsumption, UUID> {
+    List<DailyEnergyConsumption> findByDeviceIdAndConsumptionDateBetweenOrderByConsumptionDate(
+        UUID deviceId,
+        LocalDate start,
+        LocalDate end
+    );
+}
@@ -0,0 +1,115 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.HourlyEnergyConsumption;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Incremental maintenance of the daily_energy_consumption and monthly_energy_consumption
+ * rollups. The same increments that are added to the hourly rows are folded into their day
+ * and month, so the rollups stay equal to the sum of the hourly rows as long as both are
+ * written in the same transaction.
+ */
+@Repository
+public class EnergyConsumptionRollupRepository {
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    // Arbitrary key for the advisory lock serializing the initial backfill across replicas
+    private static final long BACKFILL_LOCK_KEY = 0x726f6c6c7570L;
+
+    private static final Rollup DAILY = new Rollup("daily_energy_consumption", "consumption_date",
+            "CAST(hour_timestamp AS date)");
+    private static final Rollup MONTHLY = new Rollup("monthly_energy_consumption", "month_start",
+            "CAST(date_trunc('month', hour_timestamp) AS date)");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds hourly increments to the day and month rows they fall in, creating missing rows.
+     */
+    public void addIncrements(List<HourlyEnergyConsumption> hourlyIncrements) {
+        Map<PeriodKey, Double> daily = new TreeMap<>();
+        Map<PeriodKey, Double> monthly = new TreeMap<>();
+        for (HourlyEnergyConsumption increment : hourlyIncrements) {
+            LocalDate day = increment.getHourTimestamp().toLocalDate();
+            daily.merge(new PeriodKey(increment.getDeviceId(), day), increment.getTotalEnergyConsumption(), Double::sum);
+            monthly.merge(new PeriodKey(increment.getDeviceId(), day.withDayOfMonth(1)),
+                    increment.getTotalEnergyConsumption(), Double::sum);
+        }
+        upsert(DAILY, daily);
+        upsert(MONTHLY, monthly);
+    }
+
+    /**
+     * Computes both rollups from the hourly rows if the daily rollup has never been filled,
+     * e.g. on the first start after the rollup tables were introduced. Must run in a
+     * transaction; replicas starting together wait on an advisory lock so only one does it.
+     *
+     * @return whether the backfill ran
+     */
+    public boolean backfillIfEmpty() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", BACKFILL_LOCK_KEY);
+        Boolean filled = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DAILY.table() + ")", Boolean.class);
+        if (Boolean.TRUE.equals(filled)) {
+            return false;
+        }
+
+        for (Rollup rollup : List.of(DAILY, MONTHLY)) {
+            jdbcTemplate.update("INSERT INTO " + rollup.table()
+                    + " (id, device_id, " + rollup.periodColumn() + ", total_energy_consumption)"
+                    + " SELECT gen_random_uuid(), device_id, " + rollup.periodExpression() + ", SUM(total_energy_consumption)"
+                    + " FROM hourly_energy_consumption GROUP BY device_id, " + rollup.periodExpression()
+                    + " ON CONFLICT (device_id, " + rollup.periodColumn() + ") DO UPDATE"
+                    + " SET total_energy_consumption = excluded.total_energy_consumption");
+        }
+        return true;
+    }
+
+    private void upsert(Rollup rollup, Map<PeriodKey, Double> increments) {
+        List<Map.Entry<PeriodKey, Double>> entries = new ArrayList<>(increments.entrySet());
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Map.Entry<PeriodKey, Double>> chunk = entries.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, entries.size()));
+
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(rollup.table())
+                    .append(" (id, device_id, ").append(rollup.periodColumn()).append(", total_energy_consumption) VALUES ");
+            Object[] parameters = new Object[chunk.size() * 4];
+            int i = 0;
+            for (Map.Entry<PeriodKey, Double> entry : chunk) {
+                sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                parameters[i++] = UUID.randomUUID();
+                parameters[i++] = entry.getKey().deviceId();
+                parameters[i++] = entry.getKey().periodStart();
+                parameters[i++] = entry.getValue();
+            }
+            sql.append(" ON CONFLICT (device_id, ").append(rollup.periodColumn()).append(") DO UPDATE SET total_energy_consumption = ")
+                    .append(rollup.table()).append(".total_energy_consumption + excluded.total_energy_consumption");
+            jdbcTemplate.update(sql.toString(), parameters);
+        }
+    }
+
+    private record Rollup(String table, String periodColumn, String periodExpression) {
+    }
+
+    // Ordered so concurrent upserts lock rows in the same order
+    private record PeriodKey(UUID deviceId, LocalDate periodStart) implements Comparable<PeriodKey> {
+        private static final Comparator<PeriodKey> ORDER = Comparator.comparing(PeriodKey::deviceId)
+                .thenComparing(PeriodKey::periodStart);
+
+        @Override
+        public int compareTo(PeriodKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
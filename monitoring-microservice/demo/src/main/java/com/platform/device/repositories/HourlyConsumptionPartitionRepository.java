@@ -0,0 +1,193 @@
+package com.platform.device.repositories;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DDL for the monthly range partitions of hourly_energy_consumption. Partitions are named
+ * {@code hourly_energy_consumption_pYYYY_MM}; rows outside every partition land in
+ * {@code hourly_energy_consumption_default}. All methods must run in one transaction after
+ * {@link #lock()}.
+ */
+@Repository
+public class HourlyConsumptionPartitionRepository {
+
+    private static final String TABLE = "hourly_energy_consumption";
+    private static final String LEGACY_TABLE = TABLE + "_unpartitioned";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String DEVICE_HOUR_INDEX = "uk_hourly_energy_consumption_device_hour";
+
+    // Arbitrary key for the advisory lock serializing partition maintenance across replicas
+    private static final long MAINTENANCE_LOCK_KEY = 0x7061727469L;
+
+    // The primary key has to contain the partition key; the unique constraint doubles as the
+    // per-partition (device_id, hour_timestamp) index used by every range query
+    private static final String CREATE_PARTITIONED_TABLE = "CREATE TABLE " + TABLE + " ("
+            + "id uuid NOT NULL, "
+            + "device_id uuid NOT NULL, "
+            + "hour_timestamp timestamp(6) NOT NULL, "
+            + "total_energy_consumption float(53) NOT NULL, "
+            + "CONSTRAINT hourly_energy_consumption_pkey PRIMARY KEY (id, hour_timestamp), "
+            + "CONSTRAINT " + DEVICE_HOUR_INDEX + " UNIQUE (device_id, hour_timestamp)"
+            + ") PARTITION BY RANGE (hour_timestamp)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void lock() {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", MAINTENANCE_LOCK_KEY);
+    }
+
+    /**
+     * Whether the table exists at all (Hibernate creates it plain on a fresh database).
+     */
+    public boolean exists() {
+        return relationKind() != null;
+    }
+
+    public boolean isPartitioned() {
+        return "p".equals(relationKind());
+    }
+
+    /**
+     * Replaces the plain table with a partitioned one holding the same rows, with a partition
+     * for every month that has data.
+     */
+    public void convertToPartitioned() {
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+        // Constraint and index names are per schema, free them for the new table
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY_TABLE + " DROP CONSTRAINT IF EXISTS " + DEVICE_HOUR_INDEX);
+        jdbcTemplate.execute("DROP INDEX IF EXISTS " + DEVICE_HOUR_INDEX);
+        jdbcTemplate.execute("ALTER TABLE " + LEGACY_TABLE + " DROP CONSTRAINT IF EXISTS hourly_energy_consumption_pkey");
+
+        jdbcTemplate.execute(CREATE_PARTITIONED_TABLE);
+        jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+
+        List<Timestamp> months = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', hour_timestamp) FROM " + LEGACY_TABLE, Timestamp.class);
+        for (Timestamp month : months) {
+            createPartition(YearMonth.from(month.toLocalDateTime()));
+        }
+
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (id, device_id, hour_timestamp, total_energy_consumption) "
+                + "SELECT id, device_id, hour_timestamp, total_energy_consumption FROM " + LEGACY_TABLE);
+        jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+    }
+
+    /**
+     * Monthly partitions currently attached.
+     */
+    public List<YearMonth> listPartitions() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = to_regclass(?)", String.class, TABLE);
+
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : names) {
+            if (!name.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+            try {
+                months.add(YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+            } catch (DateTimeParseException e) {
+                // Not one of ours
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Creates the partition of a month. It is built detached and filled with any rows of that
+     * month sitting in the default partition first, since attaching a range the default
+     * partition already holds rows for would fail.
+     */
+    public void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + TABLE + " INCLUDING DEFAULTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE hour_timestamp >= ? AND hour_timestamp < ?"
+                        + " RETURNING id, device_id, hour_timestamp, total_energy_consumption) "
+                        + "INSERT INTO " + partition + " SELECT * FROM moved",
+                from, to);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + partition
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    /**
+     * Detaches the partition of a month, keeping it as a standalone table unless drop is set.
+     */
+    public void detachPartition(YearMonth month, boolean drop) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+        if (drop) {
+            jdbcTemplate.execute("DROP TABLE " + partition);
+        }
+    }
+
+    /**
+     * Deletes rows older than the given month that were written to the default partition,
+     * e.g. very late measurements for a month that was already detached.
+     */
+    public int deleteDefaultRowsBefore(YearMonth month) {
+        return jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE hour_timestamp < ?",
+                Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+    }
+
+    /**
+     * Merges rows of the same device and hour into one holding their sum, and returns the number
+     * of merged (device, hour) pairs. The upserts rely on there being at most one such row.
+     */
+    public int mergeDuplicateHours() {
+        return jdbcTemplate.update("WITH duplicates AS ("
+                + "SELECT device_id, hour_timestamp, SUM(total_energy_consumption) AS total, "
+                + "MIN(id::text)::uuid AS kept_id FROM " + TABLE
+                + " GROUP BY device_id, hour_timestamp HAVING COUNT(*) > 1), "
+                + "removed AS (DELETE FROM " + TABLE + " h USING duplicates d"
+                + " WHERE h.device_id = d.device_id AND h.hour_timestamp = d.hour_timestamp AND h.id <> d.kept_id) "
+                + "UPDATE " + TABLE + " h SET total_energy_consumption = d.total FROM duplicates d"
+                + " WHERE h.id = d.kept_id AND h.hour_timestamp = d.hour_timestamp");
+    }
+
+    /**
+     * Creates the unique (device_id, hour_timestamp) index if it is missing, e.g. because
+     * Hibernate could not add it to a table holding duplicates. It contains the partition key,
+     * so it is valid on the partitioned table and cascades to every partition.
+     */
+    public void createDeviceHourIndex() {
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + DEVICE_HOUR_INDEX
+                + " ON " + TABLE + " (device_id, hour_timestamp)");
+    }
+
+    /**
+     * Whether the (device_id, hour_timestamp) index exists and is unique; a relation of the same
+     * name that is something else would make {@link #createDeviceHourIndex()} a no-op.
+     */
+    public boolean hasDeviceHourIndex() {
+        Boolean unique = jdbcTemplate.queryForObject(
+                "SELECT (SELECT indisunique FROM pg_index WHERE indexrelid = to_regclass(?) AND indrelid = to_regclass(?))",
+                Boolean.class, DEVICE_HOUR_INDEX, TABLE);
+        return Boolean.TRUE.equals(unique);
+    }
+
+    private String relationKind() {
+        return jdbcTemplate.queryForObject(
+                "SELECT (SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?))", String.class, TABLE);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+}
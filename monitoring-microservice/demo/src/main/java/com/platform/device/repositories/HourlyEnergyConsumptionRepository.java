@@ -10,7 +10,8 @@ import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface HourlyEnergyConsumptionRepository extends CrudRepository<HourlyEnergyConsumption, UUID> {
+public interface HourlyEnergyConsumptionRepository extends CrudRepository<HourlyEnergyConsumption, UUID>,
+        HourlyEnergyConsumptionRepositoryCustom {
     Optional<HourlyEnergyConsumption> findByDeviceIdAndHourTimestamp(UUID deviceId, LocalDateTime hourTimestamp);
     
     List<HourlyEnergyConsumption> findByDeviceIdAndHourTimestampBetween(
@@ -0,0 +1,22 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.HourlyEnergyConsumption;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Queries on hourly_energy_consumption that Spring Data cannot derive.
+ */
+public interface HourlyEnergyConsumptionRepositoryCustom {
+
+    /**
+     * Streams the hourly rows of several devices in one query, ordered by device and hour.
+     * Rows are fetched through a cursor when called inside a transaction, so the result is
+     * never fully materialized.
+     */
+    void forEachByDeviceIdInAndHourTimestampBetween(Collection<UUID> deviceIds, LocalDateTime start,
+                                                    LocalDateTime end, Consumer<HourlyEnergyConsumption> action);
+}
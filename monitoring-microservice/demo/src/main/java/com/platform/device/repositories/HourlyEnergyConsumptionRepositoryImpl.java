@@ -0,0 +1,50 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.HourlyEnergyConsumption;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public class HourlyEnergyConsumptionRepositoryImpl implements HourlyEnergyConsumptionRepositoryCustom {
+
+    private static final int FETCH_SIZE = 1000;
+
+    // One bind parameter for the whole id list keeps the statement shape (and plan) constant
+    private static final String SELECT_BY_DEVICES =
+            "SELECT id, device_id, hour_timestamp, total_energy_consumption FROM hourly_energy_consumption " +
+                    "WHERE device_id = ANY(?) AND hour_timestamp BETWEEN ? AND ? ORDER BY device_id, hour_timestamp";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 0 waits forever
+    @Value("${energy.consumption.batch.query-timeout-s:30}")
+    private int queryTimeoutSeconds;
+
+    @Override
+    public void forEachByDeviceIdInAndHourTimestampBetween(Collection<UUID> deviceIds, LocalDateTime start,
+                                                           LocalDateTime end, Consumer<HourlyEnergyConsumption> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_BY_DEVICES);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            statement.setArray(1, connection.createArrayOf("uuid", deviceIds.toArray()));
+            statement.setTimestamp(2, Timestamp.valueOf(start));
+            statement.setTimestamp(3, Timestamp.valueOf(end));
+            return statement;
+        }, resultSet -> {
+            action.accept(new HourlyEnergyConsumption(
+                    resultSet.getObject("id", UUID.class),
+                    resultSet.getObject("device_id", UUID.class),
+                    resultSet.getTimestamp("hour_timestamp").toLocalDateTime(),
+                    resultSet.getDouble("total_energy_consumption")));
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.HourlyEnergyConsumption;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bulk writes to hourly_energy_consumption that JPA cannot express.
+ * Relies on the unique constraint on (device_id, hour_timestamp).
+ */
+@Repository
+public class HourlyEnergyConsumptionUpsertRepository {
+
+    // Keeps each statement well below the 65535 bind parameter limit of PostgreSQL
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO hourly_energy_consumption (id, device_id, hour_timestamp, total_energy_consumption) VALUES ";
+    private static final String ON_CONFLICT_SUFFIX =
+            " ON CONFLICT (device_id, hour_timestamp) DO UPDATE SET total_energy_consumption = " +
+                    "hourly_energy_consumption.total_energy_consumption + excluded.total_energy_consumption";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the totalEnergyConsumption of each entry to the stored hourly total, creating rows
+     * that do not exist yet. Entries must be unique per (deviceId, hourTimestamp).
+     */
+    public void upsertIncrements(List<HourlyEnergyConsumption> increments) {
+        // A stable row order keeps concurrent upserts from different replicas from deadlocking
+        List<HourlyEnergyConsumption> sorted = new ArrayList<>(increments);
+        sorted.sort(Comparator.comparing(HourlyEnergyConsumption::getDeviceId)
+                .thenComparing(HourlyEnergyConsumption::getHourTimestamp));
+
+        for (int from = 0; from < sorted.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<HourlyEnergyConsumption> chunk = sorted.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, sorted.size()));
+            jdbcTemplate.update(buildUpsert(chunk.size()), toParameters(chunk));
+        }
+    }
+
+    private String buildUpsert(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * 16 + ON_CONFLICT_SUFFIX.length());
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(?, ?, ?, ?)");
+        }
+        sql.append(ON_CONFLICT_SUFFIX);
+        return sql.toString();
+    }
+
+    private Object[] toParameters(List<HourlyEnergyConsumption> chunk) {
+        Object[] parameters = new Object[chunk.size() * 4];
+        int i = 0;
+        for (HourlyEnergyConsumption increment : chunk) {
+            parameters[i++] = UUID.randomUUID();
+            parameters[i++] = increment.getDeviceId();
+            parameters[i++] = increment.getHourTimestamp();
+            parameters[i++] = increment.getTotalEnergyConsumption();
+        }
+        return parameters;
+    }
+}
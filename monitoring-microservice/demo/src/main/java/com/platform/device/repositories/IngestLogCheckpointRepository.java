@@ -0,0 +1,9 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.IngestLogCheckpoint;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestLogCheckpointRepository extends CrudRepository<IngestLogCheckpoint, String> {
+}
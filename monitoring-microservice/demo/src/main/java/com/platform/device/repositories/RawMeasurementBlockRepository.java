@@ -0,0 +1,35 @@
+package com.platform.device.repositories;
+
+import com.platform.device.entities.RawMeasurementBlock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface RawMeasurementBlockRepository extends CrudRepository<RawMeasurementBlock, UUID> {
+    List<RawMeasurementBlock> findByDeviceIdAndBlockDateBetween(
+        UUID deviceId,
+        LocalDate start,
+        LocalDate end
+    );
+
+    List<RawMeasurementBlock> findByDeviceIdAndBlockDate(UUID deviceId, LocalDate blockDate);
+
+    /**
+     * (deviceId, blockDate) pairs of days before the given date that still have several blocks.
+     */
+    @Query("SELECT b.deviceId, b.blockDate FROM RawMeasurementBlock b WHERE b.blockDate < :before " +
+            "GROUP BY b.deviceId, b.blockDate HAVING COUNT(b) > 1")
+    List<Object[]> findCompactionCandidates(LocalDate before, Pageable pageable);
+
+    /**
+     * Transaction-scoped advisory lock so only one replica compacts a given day at a time.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:namespace, :key)", nativeQuery = true)
+    boolean tryLock(int namespace, int key);
+}
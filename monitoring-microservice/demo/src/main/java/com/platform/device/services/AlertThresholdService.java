@@ -0,0 +1,77 @@
+package com.platform.device.services;
+
+import com.platform.device.dtos.AlertThresholdDTO;
+import com.platform.device.dtos.builders.AlertThresholdBuilder;
+import com.platform.device.entities.AlertThreshold;
+import com.platform.device.handlers.exceptions.model.ResourceNotFoundException;
+import com.platform.device.repositories.AlertThresholdRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class AlertThresholdService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AlertThresholdService.class);
+
+    @Autowired
+    private AlertThresholdRepository alertThresholdRepository;
+
+    @Autowired
+    private OverconsumptionDetector overconsumptionDetector;
+
+    public List<AlertThresholdDTO> getAllThresholds() {
+        return alertThresholdRepository.findAll().stream().map(AlertThresholdBuilder::fromPersistance).toList();
+    }
+
+    /**
+     * Creates or replaces the thresholds of a device or of a device type.
+     */
+    public AlertThresholdDTO saveThreshold(AlertThresholdDTO thresholdDTO) {
+        requireSingleTarget(thresholdDTO.getDeviceId(), thresholdDTO.getDeviceType());
+
+        AlertThreshold threshold = find(thresholdDTO.getDeviceId(), thresholdDTO.getDeviceType())
+                .orElseGet(() -> AlertThresholdBuilder.toAlertThresholdEntity(thresholdDTO));
+        threshold.setHourlyThreshold(thresholdDTO.getHourlyThreshold());
+        threshold.setWindowThreshold(thresholdDTO.getWindowThreshold());
+        threshold.setRateThreshold(thresholdDTO.getRateThreshold());
+        threshold = alertThresholdRepository.save(threshold);
+        LOGGER.info("Saved alert thresholds {}", thresholdDTO);
+
+        overconsumptionDetector.refreshThresholds();
+        return AlertThresholdBuilder.fromPersistance(threshold);
+    }
+
+    public void deleteThreshold(UUID deviceId, String deviceType) {
+        requireSingleTarget(deviceId, deviceType);
+
+        AlertThreshold threshold = find(deviceId, deviceType).orElseThrow(() -> {
+            LOGGER.error("No alert thresholds for device {} / type {}", deviceId, deviceType);
+            return new ResourceNotFoundException(AlertThreshold.class.getSimpleName() + " for: "
+                    + (deviceId != null ? deviceId : deviceType));
+        });
+        alertThresholdRepository.delete(threshold);
+        LOGGER.info("Deleted alert thresholds of device {} / type {}", deviceId, deviceType);
+
+        overconsumptionDetector.refreshThresholds();
+    }
+
+    private Optional<AlertThreshold> find(UUID deviceId, String deviceType) {
+        return deviceId != null
+                ? alertThresholdRepository.findByDeviceId(deviceId)
+                : alertThresholdRepository.findByDeviceType(deviceType);
+    }
+
+    private static void requireSingleTarget(UUID deviceId, String deviceType) {
+        boolean hasType = deviceType != null && !deviceType.isBlank();
+        if ((deviceId != null) == hasType) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exactly one of deviceId and deviceType is required");
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.platform.device.services;
+
+import com.platform.device.messaging.DailyConsumptionInvalidationMessage;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CacheInvalidationListener {
+
+    @Autowired
+    private DailyConsumptionCache dailyConsumptionCache;
+
+    /**
+     * Every replica receives every invalidation, including its own.
+     */
+    @RabbitListener(queues = "#{rabbitMQConfig.consumptionCacheInvalidationQueue().name}")
+    public void handleDailyConsumptionInvalidation(DailyConsumptionInvalidationMessage message) {
+        if (message.getDeviceId() != null && message.getDate() != null) {
+            dailyConsumptionCache.invalidate(message.getDeviceId(), message.getDate());
+        }
+    }
+}
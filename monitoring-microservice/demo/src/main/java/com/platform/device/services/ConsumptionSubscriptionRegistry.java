@@ -0,0 +1,174 @@
+package com.platform.device.services;
+
+import com.platform.device.config.RabbitMQConfig;
+import com.platform.device.messaging.RealtimeSubscriptionsMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Realtime consumption routing keys (a device, in one payload format) with at least one
+ * subscriber, on any replica.
+ * <p>
+ * Clients reach the replicas through the STOMP relay, so a device's measurements are usually
+ * processed on another replica than the one its viewers are connected to. Subscriptions made
+ * here are known immediately from the session events. Each replica publishes the set of its
+ * subscribed routing keys to {@link RabbitMQConfig#REALTIME_SUBSCRIPTIONS_EXCHANGE} every
+ * refresh, and right away when a key gains its first subscriber, and keeps the sets of the
+ * others. A set is trusted until expiry-ms after it arrived, so a few lost snapshots do not
+ * hide viewers. For expiry-ms after startup, before every replica has been heard from, every
+ * device counts as subscribed.
+ */
+@Service
+public class ConsumptionSubscriptionRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumptionSubscriptionRegistry.class);
+
+    static final String DESTINATION_PREFIX = "/exchange/amq.topic/";
+    static final String ROUTING_KEY_PREFIX = "consumption.";
+    // Compact binary payloads, see RealtimeConsumptionWireFormat
+    static final String BINARY_ROUTING_KEY_PREFIX = "consumption.binary.";
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    // Without it subscriptions on other replicas are unknown and every device counts as subscribed
+    @Value("${realtime.subscriptions.cluster-enabled:true}")
+    private boolean clusterEnabled;
+
+    @Value("${realtime.subscriptions.expiry-ms:10000}")
+    private long expiryMs;
+
+    private final String replicaId = UUID.randomUUID().toString();
+    private final long startedNanos = System.nanoTime();
+    // Session id -> subscription id -> routing key
+    private final ConcurrentHashMap<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> localSubscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RemoteSnapshot> remoteSubscribers = new ConcurrentHashMap<>();
+
+    public boolean hasJsonSubscribers(UUID deviceId) {
+        return hasSubscribers(ROUTING_KEY_PREFIX + deviceId);
+    }
+
+    public boolean hasBinarySubscribers(UUID deviceId) {
+        return hasSubscribers(BINARY_ROUTING_KEY_PREFIX + deviceId);
+    }
+
+    private boolean hasSubscribers(String routingKey) {
+        if (localSubscribers.containsKey(routingKey)) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long expiryNanos = expiryMs * 1_000_000L;
+        if (!clusterEnabled || now - startedNanos < expiryNanos) {
+            return true;
+        }
+        for (RemoteSnapshot snapshot : remoteSubscribers.values()) {
+            if (now - snapshot.receivedNanos() < expiryNanos && snapshot.routingKeys().contains(routingKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        String routingKey = parseRoutingKey(headers.getDestination());
+        if (routingKey == null || headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(headers.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(headers.getSubscriptionId(), routingKey);
+        if (previous != null) {
+            release(previous);
+        }
+        if (localSubscribers.merge(routingKey, 1, Integer::sum) == 1) {
+            // Other replicas start publishing this device without waiting for the next refresh
+            publishSnapshot();
+        }
+        LOGGER.debug("Session {} subscribed to {}", headers.getSessionId(), routingKey);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessionSubscriptions(event);
+        if (subscriptions == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        String routingKey = subscriptions.remove(headers.getSubscriptionId());
+        if (routingKey != null) {
+            release(routingKey);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${realtime.subscriptions.refresh-ms:2000}")
+    public void publishSnapshot() {
+        if (!clusterEnabled) {
+            return;
+        }
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.REALTIME_SUBSCRIPTIONS_EXCHANGE, "",
+                    new RealtimeSubscriptionsMessage(replicaId, Set.copyOf(localSubscribers.keySet())));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to publish realtime subscriptions: {}", e.getMessage());
+        }
+        // Replicas that stopped publishing are forgotten
+        long expiryNanos = expiryMs * 1_000_000L;
+        remoteSubscribers.values().removeIf(snapshot -> System.nanoTime() - snapshot.receivedNanos() >= expiryNanos);
+    }
+
+    /**
+     * Replaces the subscriptions known for another replica.
+     */
+    public void onRemoteSnapshot(String fromReplica, Set<String> routingKeys) {
+        if (!replicaId.equals(fromReplica)) {
+            remoteSubscribers.put(fromReplica, new RemoteSnapshot(Set.copyOf(routingKeys), System.nanoTime()));
+        }
+    }
+
+    private Map<String, String> sessionSubscriptions(AbstractSubProtocolEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    private void release(String routingKey) {
+        localSubscribers.computeIfPresent(routingKey, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Realtime consumption routing key of a destination, or null for other destinations.
+     */
+    private static String parseRoutingKey(String destination) {
+        if (destination == null || !destination.startsWith(DESTINATION_PREFIX + ROUTING_KEY_PREFIX)) {
+            return null;
+        }
+        return destination.substring(DESTINATION_PREFIX.length());
+    }
+
+    private record RemoteSnapshot(Set<String> routingKeys, long receivedNanos) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.platform.device.services;
+
+import com.platform.device.config.RabbitMQConfig;
+import com.platform.device.messaging.DailyConsumptionInvalidationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized /energy-consumption/daily responses of closed days (before today), keyed by
+ * (deviceId, date) and bounded by their total size in bytes.
+ * <p>
+ * A late measurement for a closed day drops the entry on the replica that ingests it right
+ * away, and on every replica once the flush has written it to the database, via a fanout
+ * exchange. Responses are stored with a content hash ETag so clients can revalidate.
+ */
+@Service
+public class DailyConsumptionCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailyConsumptionCache.class);
+
+    // Approximate per-entry overhead besides the body: key, ETag, map and segment nodes
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+    private static final int TYPICAL_ENTRY_BYTES = 2048;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    private final boolean enabled;
+    private final WindowTinyLfuCache<CacheKey, CachedResponse> cache;
+
+    // Bumped on every invalidation, lets a loader detect that it raced with one
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public DailyConsumptionCache(@Value("${energy.consumption.cache.enabled:true}") boolean enabled,
+                                 @Value("${energy.consumption.cache.max-bytes:33554432}") long maxBytes) {
+        this.enabled = enabled;
+        this.cache = new WindowTinyLfuCache<>(maxBytes, (int) Math.min(Integer.MAX_VALUE, maxBytes / TYPICAL_ENTRY_BYTES),
+                response -> response.body().length + ENTRY_OVERHEAD_BYTES);
+    }
+
+    /**
+     * A day is only cached once all its hours are closed.
+     */
+    public boolean isCacheable(LocalDate date) {
+        return enabled && date.isBefore(LocalDate.now());
+    }
+
+    public CachedResponse get(UUID deviceId, LocalDate date) {
+        return isCacheable(date) ? cache.get(new CacheKey(deviceId, date)) : null;
+    }
+
+    /**
+     * Stamp to take before loading a response and pass to {@link #put}.
+     */
+    public long invalidationStamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Caches a response loaded after the given stamp, unless an invalidation happened meanwhile.
+     */
+    public void put(UUID deviceId, LocalDate date, CachedResponse response, long stamp) {
+        if (!isCacheable(date)) {
+            return;
+        }
+        CacheKey key = new CacheKey(deviceId, date);
+        cache.put(key, response);
+        // Checked after the put: an invalidation either ran before (seen here) or removes it after
+        if (invalidations.get() != stamp) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Drops the cached response of a day on this replica only.
+     */
+    public void invalidate(UUID deviceId, LocalDate date) {
+        if (!isCacheable(date)) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        cache.invalidate(new CacheKey(deviceId, date));
+    }
+
+    /**
+     * Tells every replica that a closed day of the device changed in the database.
+     */
+    public void broadcastInvalidation(UUID deviceId, LocalDate date) {
+        if (!isCacheable(date)) {
+            return;
+        }
+        invalidate(deviceId, date);
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.CONSUMPTION_CACHE_INVALIDATION_EXCHANGE, "",
+                    new DailyConsumptionInvalidationMessage(deviceId, date));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to broadcast cache invalidation for device {} on {}: {}", deviceId, date, e.getMessage());
+        }
+    }
+
+    public long weightedSize() {
+        return cache.weightedSize();
+    }
+
+    private record CacheKey(UUID deviceId, LocalDate date) {
+    }
+
+    /**
+     * Serialized response body and its strong ETag.
+     */
+    public record CachedResponse(byte[] body, String etag) {
+
+        public static CachedResponse of(byte[] body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                return new CachedResponse(body, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -24,6 +24,21 @@ public class DeviceEventListener {
     @Autowired
     private DeviceRepository deviceRepository;
 
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    /**
+     * Every replica receives every device event here and only updates its in-memory registry.
+     */
+    @RabbitListener(queues = "#{rabbitMQConfig.deviceRegistryQueue().name}")
+    public void handleDeviceRegistryEvent(DeviceEventMessage message) {
+        if ("CREATE".equals(message.getEventType())) {
+            deviceRegistry.register(message.getDeviceId(), message.getName(), message.getType());
+        } else if ("DELETE".equals(message.getEventType())) {
+            deviceRegistry.unregister(message.getDeviceId());
+        }
+    }
+
     @RabbitListener(queues = RabbitMQConfig.MONITORING_DEVICE_QUEUE)
     public void handleDeviceEvent(DeviceEventMessage message) {
         if ("CREATE".equals(message.getEventType())) {
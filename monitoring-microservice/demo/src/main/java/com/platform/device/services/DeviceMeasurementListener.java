@@ -1,14 +1,21 @@
 package com.platform.device.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.platform.device.config.RabbitMQConfig;
 import com.platform.device.messaging.DeviceMeasurementMessage;
-import com.platform.device.repositories.DeviceRepository;
+import com.platform.device.messaging.MeasurementBatch;
+import com.platform.device.messaging.MeasurementWireFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -19,23 +26,148 @@ public class DeviceMeasurementListener {
     private HourlyEnergyConsumptionService hourlyEnergyConsumptionService;
 
     @Autowired
-    private DeviceRepository deviceRepository;
+    private DeviceRegistry deviceRegistry;
 
-    @RabbitListener(queues = "#{rabbitMQConfig.monitoringMeasurementsQueue().name}")
-    public void handleDeviceMeasurement(DeviceMeasurementMessage message) {
-        UUID deviceId = message.getDeviceId();
+    @Autowired
+    private IngestLog ingestLog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    /**
+     * Consumes measurements in batches; device membership is answered by the in-memory registry.
+     * Messages are decoded by content type: {@link MeasurementWireFormat} bodies, single or
+     * envelopes of many measurements, are read in place, anything else as JSON. All
+     * measurements of a delivery batch are applied, or logged, together.
+     * With the ingest log enabled the batch is only appended to it, and acked once it is durable.
+     * Without it the batch is applied directly: the database reads are done first, so a
+     * database outage rejects the whole batch before anything is applied, and if applying
+     * fails midway the measurements not applied yet are published back to the queue.
+     */
+    @RabbitListener(queues = "#{rabbitMQConfig.monitoringMeasurementsQueue().name}",
+            containerFactory = RabbitMQConfig.INGEST_BATCH_CONTAINER_FACTORY)
+    public void handleDeviceMeasurements(List<Message> messages) throws IOException {
+        MeasurementBatch batch = decode(messages);
 
-        if (!deviceRepository.existsById(deviceId)) {
-            LOGGER.warn("Received measurement for unknown device {}, skipping", deviceId);
+        if (ingestLog.isEnabled()) {
+            // A failed append rejects the batch, RabbitMQ redelivers it
+            ingestLog.append(batch);
+            LOGGER.debug("Logged {} device measurements from {} messages", batch.size(), messages.size());
             return;
         }
 
-        LOGGER.info("Received device measurement: device={}, timestamp={}, value={}",
-                deviceId, message.getTimestamp(), message.getMeasurementValue());
+        // Nothing is applied yet, a failure here rejects the batch and RabbitMQ redelivers it
+        for (int i = 0; i < batch.size(); i++) {
+            hourlyEnergyConsumptionService.prepareMeasurement(batch.deviceId(i), batch.timestamp(i));
+        }
+
+        // Once a measurement is applied the batch must not be redelivered, its deltas would be added twice
+        for (int i = 0; i < batch.size(); i++) {
+            LOGGER.debug("Received device measurement: device={}, timestamp={}, value={}",
+                    batch.deviceId(i), batch.timestamp(i), batch.value(i));
+
+            try {
+                hourlyEnergyConsumptionService.processMeasurement(
+                        batch.deviceId(i),
+                        batch.timestamp(i),
+                        batch.value(i));
+            } catch (Exception e) {
+                LOGGER.error("Failed to apply measurement of device {} at {}: {}",
+                        batch.deviceId(i), batch.timestamp(i), e.getMessage(), e);
+                requeueUnapplied(batch, i, messages.get(0).getMessageProperties().getConsumerQueue());
+                return;
+            }
+        }
+        LOGGER.info("Processed {} device measurements from {} messages", batch.size(), messages.size());
+    }
+
+    /**
+     * Publishes the measurements of a batch from an index on back to the ingest queue as one
+     * envelope, so only what was not applied is processed again.
+     */
+    private void requeueUnapplied(MeasurementBatch batch, int from, String queueName) {
+        int unapplied = batch.size() - from;
+        try {
+            rabbitTemplate.send("", queueName, MessageBuilder
+                    .withBody(MeasurementWireFormat.encode(batch, from))
+                    .setContentType(MeasurementWireFormat.BATCH_CONTENT_TYPE)
+                    .build());
+            LOGGER.warn("Applied {} of {} device measurements, published the other {} back to {}",
+                    from, batch.size(), unapplied, queueName);
+        } catch (Exception e) {
+            LOGGER.error("Dropping {} device measurements that could not be published back to {}: {}",
+                    unapplied, queueName, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes the measurements of known devices; unknown devices, malformed messages and
+     * values that are not finite are skipped.
+     */
+    private MeasurementBatch decode(List<Message> messages) {
+        MeasurementBatch batch = new MeasurementBatch(messages.size());
+        for (Message message : messages) {
+            byte[] body = message.getBody();
+            String contentType = message.getMessageProperties().getContentType();
+            if (MeasurementWireFormat.isBatch(contentType)) {
+                if (body.length % MeasurementWireFormat.RECORD_SIZE != 0) {
+                    LOGGER.warn("Measurement envelope of {} bytes has a trailing partial record, ignoring it", body.length);
+                }
+                for (int offset = 0; offset + MeasurementWireFormat.RECORD_SIZE <= body.length; offset += MeasurementWireFormat.RECORD_SIZE) {
+                    addIfKnown(batch,
+                            MeasurementWireFormat.deviceIdMostSignificantBits(body, offset),
+                            MeasurementWireFormat.deviceIdLeastSignificantBits(body, offset),
+                            MeasurementWireFormat.epochMicros(body, offset),
+                            MeasurementWireFormat.value(body, offset));
+                }
+                continue;
+            }
+            if (MeasurementWireFormat.isBinary(contentType)) {
+                if (body.length != MeasurementWireFormat.RECORD_SIZE) {
+                    LOGGER.warn("Skipping binary measurement of {} bytes, expected {}", body.length, MeasurementWireFormat.RECORD_SIZE);
+                    continue;
+                }
+                addIfKnown(batch,
+                        MeasurementWireFormat.deviceIdMostSignificantBits(body, 0),
+                        MeasurementWireFormat.deviceIdLeastSignificantBits(body, 0),
+                        MeasurementWireFormat.epochMicros(body, 0),
+                        MeasurementWireFormat.value(body, 0));
+                continue;
+            }
 
-        hourlyEnergyConsumptionService.processMeasurement(
-                deviceId,
-                message.getTimestamp(),
-                message.getMeasurementValue());
+            DeviceMeasurementMessage measurement;
+            try {
+                measurement = objectMapper.readValue(body, DeviceMeasurementMessage.class);
+            } catch (Exception e) {
+                LOGGER.warn("Skipping unreadable measurement message: {}", e.getMessage());
+                continue;
+            }
+            if (measurement.getDeviceId() == null || measurement.getTimestamp() == null || measurement.getMeasurementValue() == null) {
+                LOGGER.warn("Skipping incomplete measurement message: {}", measurement);
+                continue;
+            }
+            addIfKnown(batch,
+                    measurement.getDeviceId().getMostSignificantBits(),
+                    measurement.getDeviceId().getLeastSignificantBits(),
+                    MeasurementWireFormat.toEpochMicros(measurement.getTimestamp()),
+                    measurement.getMeasurementValue());
+        }
+        return batch;
+    }
+
+    private void addIfKnown(MeasurementBatch batch, long msb, long lsb, long epochMicros, double value) {
+        // JSON cannot carry these, a binary record can; a NaN would stick to the hourly and rolled-up totals
+        if (!Double.isFinite(value)) {
+            LOGGER.warn("Skipping measurement of device {} with value {}", new UUID(msb, lsb), value);
+            return;
+        }
+        if (!deviceRegistry.isKnown(msb, lsb)) {
+            LOGGER.warn("Received measurement for unknown device {}, skipping", new UUID(msb, lsb));
+            return;
+        }
+        batch.add(msb, lsb, epochMicros, value);
     }
 }
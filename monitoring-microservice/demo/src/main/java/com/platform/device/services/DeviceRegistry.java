@@ -0,0 +1,359 @@
+package com.platform.device.services;
+
+import com.platform.device.entities.Device;
+import com.platform.device.repositories.DeviceRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory set of the devices known to this replica, with their names and types.
+ * Loaded from the devices table at startup and kept in sync by device events,
+ * so the measurement hot path does not need to query the database.
+ * <p>
+ * Ids are stored as two primitive longs in an open-addressing table, which keeps
+ * the footprint at roughly 24 bytes per device plus the name and type. Lookups use an
+ * optimistic read and only take the lock if they raced with a writer.
+ * <p>
+ * Ids missing from the database are remembered for a short time, so a producer sending
+ * measurements for an unknown device does not cost a query per measurement. Deleted ids are
+ * remembered for a while too: the delete event can reach this registry before the row is
+ * gone from the database, and the fallback lookup must not register the device again.
+ */
+@Service
+public class DeviceRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceRegistry.class);
+
+    private static final String UNKNOWN_DEVICE_NAME = "Unknown Device";
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Value("${device.registry.negative-cache.ttl-ms:5000}")
+    private long negativeTtlMs;
+
+    @Value("${device.registry.negative-cache.max-entries:10000}")
+    private int negativeMaxEntries;
+
+    // Longer than the delete event on the shared device queue may lag behind the registry event
+    @Value("${device.registry.tombstone-ttl-ms:60000}")
+    private long tombstoneTtlMs;
+
+    private final DeviceTable table = new DeviceTable();
+    // Unknown id -> System.nanoTime() at which the miss expires
+    private WindowTinyLfuCache<UUID, Long> misses;
+    // Deleted id -> System.nanoTime() at which the tombstone expires; deletions are rare, so a plain map
+    private final ConcurrentHashMap<UUID, Long> tombstones = new ConcurrentHashMap<>();
+    // Bumped on every registration and deletion, a lookup that raced with one does not keep its result
+    private final AtomicLong registrations = new AtomicLong();
+
+    @PostConstruct
+    public void load() {
+        misses = new WindowTinyLfuCache<>(negativeMaxEntries, negativeMaxEntries, expiry -> 1);
+        int loaded = 0;
+        for (Device device : deviceRepository.findAll()) {
+            table.put(device.getId(), device.getName(), device.getType());
+            loaded++;
+        }
+        LOGGER.info("Loaded {} devices into the device registry", loaded);
+    }
+
+    public void register(UUID deviceId, String name, String type) {
+        if (deviceId != null) {
+            table.put(deviceId, name, type);
+            registrations.incrementAndGet();
+            misses.invalidate(deviceId);
+            tombstones.remove(deviceId);
+        }
+    }
+
+    public void unregister(UUID deviceId) {
+        if (deviceId != null) {
+            long now = System.nanoTime();
+            tombstones.values().removeIf(expiry -> now - expiry >= 0);
+            if (tombstoneTtlMs > 0) {
+                tombstones.put(deviceId, now + tombstoneTtlMs * 1_000_000L);
+            }
+            registrations.incrementAndGet();
+            table.remove(deviceId);
+        }
+    }
+
+    /**
+     * Checks the registry first and falls back to the database on a miss, so devices created
+     * through another replica are picked up and cached on first sight. Ids the database did
+     * not know either are answered from the negative cache until it expires, and recently
+     * deleted ids are unknown whatever the database still says.
+     */
+    public boolean isKnown(UUID deviceId) {
+        if (deviceId == null) {
+            return false;
+        }
+        if (table.contains(deviceId)) {
+            return true;
+        }
+        Long missExpiry = misses.get(deviceId);
+        if (missExpiry != null && System.nanoTime() - missExpiry < 0) {
+            return false;
+        }
+        if (isTombstoned(deviceId)) {
+            return false;
+        }
+
+        long stamp = registrations.get();
+        Optional<Device> device = deviceRepository.findById(deviceId);
+        if (device.isPresent()) {
+            if (registrations.get() != stamp) {
+                // Registered or deleted meanwhile, the registry has the newer answer
+                return table.contains(deviceId);
+            }
+            table.put(deviceId, device.get().getName(), device.get().getType());
+            if (registrations.get() != stamp && isTombstoned(deviceId)) {
+                table.remove(deviceId);
+                return false;
+            }
+            misses.invalidate(deviceId);
+            return true;
+        }
+        if (negativeTtlMs > 0) {
+            misses.put(deviceId, System.nanoTime() + negativeTtlMs * 1_000_000L);
+            if (registrations.get() != stamp) {
+                misses.invalidate(deviceId);
+            }
+        }
+        return false;
+    }
+
+    private boolean isTombstoned(UUID deviceId) {
+        Long expiry = tombstones.get(deviceId);
+        return expiry != null && System.nanoTime() - expiry < 0;
+    }
+
+    /**
+     * Same as {@link #isKnown(UUID)} for an id given as its two halves; a hit does not allocate.
+     */
+    public boolean isKnown(long mostSignificantBits, long leastSignificantBits) {
+        return table.contains(mostSignificantBits, leastSignificantBits)
+                || isKnown(new UUID(mostSignificantBits, leastSignificantBits));
+    }
+
+    public String getName(UUID deviceId) {
+        String name = deviceId != null ? table.getName(deviceId) : null;
+        return name != null ? name : UNKNOWN_DEVICE_NAME;
+    }
+
+    /**
+     * Type of a known device, or null.
+     */
+    public String getType(UUID deviceId) {
+        return deviceId != null ? table.getType(deviceId) : null;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Open-addressing hash table with linear probing keyed by the two halves of a UUID.
+     */
+    private static final class DeviceTable {
+        private static final byte EMPTY = 0;
+        private static final byte FULL = 1;
+        private static final byte DELETED = 2;
+        private static final float MAX_LOAD = 0.6f;
+
+        private final StampedLock lock = new StampedLock();
+
+        private long[] mostSignificant = new long[1024];
+        private long[] leastSignificant = new long[1024];
+        private String[] names = new String[1024];
+        private String[] types = new String[1024];
+        private byte[] states = new byte[1024];
+        private int size;
+        private int used;
+
+        boolean contains(UUID id) {
+            return contains(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+
+        boolean contains(long msb, long lsb) {
+            long stamp = lock.tryOptimisticRead();
+            boolean found = indexOf(msb, lsb) >= 0;
+            if (lock.validate(stamp)) {
+                return found;
+            }
+
+            stamp = lock.readLock();
+            try {
+                return indexOf(msb, lsb) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        String getName(UUID id) {
+            long stamp = lock.tryOptimisticRead();
+            String name = valueAt(names, indexOf(id));
+            if (lock.validate(stamp)) {
+                return name;
+            }
+
+            stamp = lock.readLock();
+            try {
+                return valueAt(names, indexOf(id));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        String getType(UUID id) {
+            long stamp = lock.tryOptimisticRead();
+            String type = valueAt(types, indexOf(id));
+            if (lock.validate(stamp)) {
+                return type;
+            }
+
+            stamp = lock.readLock();
+            try {
+                return valueAt(types, indexOf(id));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void put(UUID id, String name, String type) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(id);
+                if (index >= 0) {
+                    names[index] = name;
+                    types[index] = type;
+                    return;
+                }
+
+                if (used + 1 > states.length * MAX_LOAD) {
+                    resize(size + 1 > states.length * MAX_LOAD / 2 ? states.length * 2 : states.length);
+                }
+                insert(id.getMostSignificantBits(), id.getLeastSignificantBits(), name, type);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void remove(UUID id) {
+            long stamp = lock.writeLock();
+            try {
+                int index = indexOf(id);
+                if (index >= 0) {
+                    states[index] = DELETED;
+                    names[index] = null;
+                    types[index] = null;
+                    size--;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static String valueAt(String[] values, int index) {
+            // Arrays may have been swapped by a concurrent resize, the caller validates the stamp
+            return index >= 0 && index < values.length ? values[index] : null;
+        }
+
+        private int indexOf(UUID id) {
+            return indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+
+        private int indexOf(long msb, long lsb) {
+            byte[] currentStates = states;
+            long[] currentMsb = mostSignificant;
+            long[] currentLsb = leastSignificant;
+            int mask = currentStates.length - 1;
+            if (currentMsb.length != currentStates.length || currentLsb.length != currentStates.length) {
+                // Torn read during a resize, the caller retries under the read lock
+                return -1;
+            }
+
+            int index = hash(msb, lsb) & mask;
+            for (int probes = 0; probes < currentStates.length; probes++) {
+                byte state = currentStates[index];
+                if (state == EMPTY) {
+                    return -1;
+                }
+                if (state == FULL && currentMsb[index] == msb && currentLsb[index] == lsb) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(long msb, long lsb, String name, String type) {
+            int mask = states.length - 1;
+            int index = hash(msb, lsb) & mask;
+            while (states[index] == FULL) {
+                index = (index + 1) & mask;
+            }
+            if (states[index] == EMPTY) {
+                used++;
+            }
+            states[index] = FULL;
+            mostSignificant[index] = msb;
+            leastSignificant[index] = lsb;
+            names[index] = name;
+            types[index] = type;
+            size++;
+        }
+
+        /**
+         * Rehashes into a table of the given capacity, dropping tombstones.
+         */
+        private void resize(int capacity) {
+            long[] oldMsb = mostSignificant;
+            long[] oldLsb = leastSignificant;
+            String[] oldNames = names;
+            String[] oldTypes = types;
+            byte[] oldStates = states;
+
+            mostSignificant = new long[capacity];
+            leastSignificant = new long[capacity];
+            names = new String[capacity];
+            types = new String[capacity];
+            states = new byte[capacity];
+            size = 0;
+            used = 0;
+
+            for (int i = 0; i < oldStates.length; i++) {
+                if (oldStates[i] == FULL) {
+                    insert(oldMsb[i], oldLsb[i], oldNames[i], oldTypes[i]);
+                }
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+}
@@ -21,6 +21,9 @@ public class DeviceService {
     @Autowired
     private DeviceRepository deviceRepository;
 
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
     public List<DeviceDTO> getAllDevices() {
         List<Device> users = (List<Device>) this.deviceRepository.findAll();
         return users.stream().map(DeviceBuilder::fromPersistance).toList();
@@ -47,6 +50,7 @@ public class DeviceService {
 
         try {
             newDevice = this.deviceRepository.save(newDevice);
+            deviceRegistry.register(newDevice.getId(), newDevice.getName(), newDevice.getType());
             LOGGER.info("Device with id {} was successfully inserted in db", newDevice.getId());
         } catch (Exception e) {
             LOGGER.error("Failed to save device with id {}: {}", device.getId(), e.getMessage(), e);
@@ -68,6 +72,7 @@ public class DeviceService {
         existingDevice.setType(givenDevice.getType());
 
         existingDevice = deviceRepository.save(existingDevice);
+        deviceRegistry.register(existingDevice.getId(), existingDevice.getName(), existingDevice.getType());
         LOGGER.debug("Device with id {} was updated in db", existingDevice.getId());
 
         return DeviceBuilder.fromPersistance(existingDevice);
@@ -81,6 +86,7 @@ public class DeviceService {
         }
 
         this.deviceRepository.deleteById(id);
+        deviceRegistry.unregister(id);
         LOGGER.debug("Device with id {} was deleted from db", id);
     }
 
@@ -0,0 +1,86 @@
+package com.platform.device.services;
+
+import com.platform.device.dtos.ConsumptionGranularity;
+import com.platform.device.dtos.ConsumptionRangeDTO;
+import com.platform.device.dtos.PeriodConsumptionDTO;
+import com.platform.device.repositories.DailyEnergyConsumptionRepository;
+import com.platform.device.repositories.EnergyConsumptionRollupRepository;
+import com.platform.device.repositories.MonthlyEnergyConsumptionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Consumption over long ranges read from the daily and monthly rollups, so a year of data
+ * is 365 or 12 rows instead of every hourly row.
+ */
+@Service
+public class EnergyConsumptionRollupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnergyConsumptionRollupService.class);
+
+    @Autowired
+    private DailyEnergyConsumptionRepository dailyEnergyConsumptionRepository;
+
+    @Autowired
+    private MonthlyEnergyConsumptionRepository monthlyEnergyConsumptionRepository;
+
+    @Autowired
+    private EnergyConsumptionRollupRepository rollupRepository;
+
+    @Autowired
+    private HourlyConsumptionBuffer hourlyConsumptionBuffer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        Boolean backfilled = transactionTemplate.execute(status -> rollupRepository.backfillIfEmpty());
+        if (Boolean.TRUE.equals(backfilled)) {
+            LOGGER.info("Backfilled daily and monthly consumption rollups from the hourly totals");
+        }
+    }
+
+    /**
+     * Consumption per day or per month between two dates, inclusive. With MONTH granularity
+     * the range is widened to whole months.
+     */
+    public ConsumptionRangeDTO getConsumption(UUID deviceId, LocalDate startDate, LocalDate endDate,
+                                              ConsumptionGranularity granularity) {
+        LocalDate from = granularity.periodStart(startDate);
+        LocalDate to = granularity == ConsumptionGranularity.MONTH
+                ? endDate.withDayOfMonth(endDate.lengthOfMonth())
+                : endDate;
+
+        Map<LocalDate, Double> totals = new TreeMap<>();
+        if (granularity == ConsumptionGranularity.MONTH) {
+            monthlyEnergyConsumptionRepository
+                    .findByDeviceIdAndMonthStartBetweenOrderByMonthStart(deviceId, from, granularity.periodStart(to))
+                    .forEach(row -> totals.merge(row.getMonthStart(), row.getTotalEnergyConsumption(), Double::sum));
+        } else {
+            dailyEnergyConsumptionRepository
+                    .findByDeviceIdAndConsumptionDateBetweenOrderByConsumptionDate(deviceId, from, to)
+                    .forEach(row -> totals.merge(row.getConsumptionDate(), row.getTotalEnergyConsumption(), Double::sum));
+        }
+
+        // Overlay deltas that are still in the write-behind buffer
+        hourlyConsumptionBuffer.getPendingDeltas(deviceId, from.atStartOfDay(), to.atTime(23, 59, 59))
+                .forEach((hour, delta) -> totals.merge(granularity.periodStart(hour.toLocalDate()), delta, Double::sum));
+
+        List<PeriodConsumptionDTO> consumptions = totals.entrySet().stream()
+                .map(entry -> new PeriodConsumptionDTO(entry.getKey(), entry.getValue()))
+                .toList();
+        double totalConsumption = consumptions.stream().mapToDouble(PeriodConsumptionDTO::getConsumption).sum();
+
+        return new ConsumptionRangeDTO(deviceId, granularity, from, to, totalConsumption, consumptions);
+    }
+}
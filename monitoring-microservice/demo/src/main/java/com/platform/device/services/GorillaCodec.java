@@ -0,0 +1,231 @@
+package com.platform.device.services;
+
+import java.util.Arrays;
+
+/**
+ * Gorilla time-series compression (Pelkonen et al., VLDB 2015) for (epoch millis, double)
+ * points: timestamps as delta-of-deltas in variable length buckets and values as the XOR
+ * with the previous value, storing only its meaningful bits. A point at the usual interval
+ * with an unchanged value takes two bits. A changed value costs its meaningful XOR bits plus
+ * up to 13 bits of header: a few bits for round or integer-valued readings, but most of the
+ * 52 mantissa bits for noisy measured doubles, which end up around 7 to 8 bytes per point.
+ * <p>
+ * A block starts with the first timestamp and value in full (16 bytes). The number of points
+ * is kept outside the block, since the last byte is padded.
+ */
+final class GorillaCodec {
+
+    private GorillaCodec() {
+    }
+
+    interface PointConsumer {
+        void accept(long timestampMillis, double value);
+    }
+
+    /**
+     * Decodes the first count points of a block.
+     */
+    static void decode(byte[] block, int count, PointConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+        BitReader in = new BitReader(block);
+        long timestamp = in.readBits(64);
+        long valueBits = in.readBits(64);
+        consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+
+        long delta = 0;
+        int leading = Integer.MAX_VALUE;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            timestamp += delta;
+
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    int significant = (int) in.readBits(6);
+                    trailing = 64 - leading - (significant == 0 ? 64 : significant);
+                }
+                int significant = 64 - leading - trailing;
+                valueBits ^= in.readBits(significant) << trailing;
+            }
+            consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        }
+        int bits;
+        if (!in.readBit()) {
+            bits = 7;
+        } else if (!in.readBit()) {
+            bits = 9;
+        } else if (!in.readBit()) {
+            bits = 12;
+        } else {
+            bits = 32;
+        }
+        long raw = in.readBits(bits);
+        // Sign-extend the two's complement field
+        return (raw << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * Appends points to one block. Not thread-safe.
+     */
+    static final class Encoder {
+        private final BitWriter out = new BitWriter();
+        private int count;
+        private long minTimestamp;
+        private long maxTimestamp;
+        private long lastTimestamp;
+        private long lastDelta;
+        private long lastValueBits;
+        private int leading = Integer.MAX_VALUE;
+        private int trailing;
+
+        void append(long timestampMillis, double value) {
+            long valueBits = Double.doubleToRawLongBits(value);
+            if (count == 0) {
+                out.writeBits(timestampMillis, 64);
+                out.writeBits(valueBits, 64);
+                minTimestamp = timestampMillis;
+                maxTimestamp = timestampMillis;
+            } else {
+                long delta = timestampMillis - lastTimestamp;
+                writeDeltaOfDelta(delta - lastDelta);
+                lastDelta = delta;
+                writeValue(valueBits ^ lastValueBits);
+                minTimestamp = Math.min(minTimestamp, timestampMillis);
+                maxTimestamp = Math.max(maxTimestamp, timestampMillis);
+            }
+            lastTimestamp = timestampMillis;
+            lastValueBits = valueBits;
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        long minTimestamp() {
+            return minTimestamp;
+        }
+
+        long maxTimestamp() {
+            return maxTimestamp;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void writeDeltaOfDelta(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                out.writeBit(false);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                out.writeBits(0b10, 2);
+                out.writeBits(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                out.writeBits(0b110, 3);
+                out.writeBits(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(deltaOfDelta, 12);
+            } else {
+                // A block spans one day, so any delta-of-delta in millis fits in 32 bits
+                out.writeBits(0b1111, 4);
+                out.writeBits(deltaOfDelta, 32);
+            }
+        }
+
+        private void writeValue(long xor) {
+            if (xor == 0) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+
+            int newLeading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading != Integer.MAX_VALUE && newLeading >= leading && newTrailing >= trailing) {
+                // Fits in the previous window of meaningful bits
+                out.writeBit(false);
+                out.writeBits(xor >>> trailing, 64 - leading - trailing);
+                return;
+            }
+
+            leading = newLeading;
+            trailing = newTrailing;
+            int significant = 64 - leading - trailing;
+            out.writeBit(true);
+            out.writeBits(leading, 5);
+            // 64 significant bits does not fit in 6 bits and is written as 0
+            out.writeBits(significant == 64 ? 0 : significant, 6);
+            out.writeBits(xor >>> trailing, significant);
+        }
+    }
+
+    private static final class BitWriter {
+        private byte[] buffer = new byte[64];
+        private long bitLength;
+
+        void writeBit(boolean bit) {
+            ensureCapacity(1);
+            if (bit) {
+                buffer[(int) (bitLength >>> 3)] |= (byte) (0x80 >>> (bitLength & 7));
+            }
+            bitLength++;
+        }
+
+        /**
+         * Writes the low bits of value, most significant first.
+         */
+        void writeBits(long value, int bits) {
+            ensureCapacity(bits);
+            for (int i = bits - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    buffer[(int) (bitLength >>> 3)] |= (byte) (0x80 >>> (bitLength & 7));
+                }
+                bitLength++;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (int) ((bitLength + 7) >>> 3));
+        }
+
+        private void ensureCapacity(int bits) {
+            long neededBytes = (bitLength + bits + 7) >>> 3;
+            if (neededBytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.max(neededBytes, buffer.length * 2L));
+            }
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buffer;
+        private long position;
+
+        BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean readBit() {
+            boolean bit = (buffer[(int) (position >>> 3)] & (0x80 >>> (position & 7))) != 0;
+            position++;
+            return bit;
+        }
+
+        long readBits(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                value = (value << 1) | (readBit() ? 1 : 0);
+            }
+            return value;
+        }
+    }
+}
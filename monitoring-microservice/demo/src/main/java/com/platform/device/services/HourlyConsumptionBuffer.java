@@ -0,0 +1,445 @@
+package com.platform.device.services;
+
+import com.platform.device.entities.HourlyEnergyConsumption;
+import com.platform.device.repositories.EnergyConsumptionRollupRepository;
+import com.platform.device.repositories.HourlyEnergyConsumptionRepository;
+import com.platform.device.repositories.HourlyEnergyConsumptionUpsertRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind aggregation of measurements per (device, hour bucket).
+ * Running totals are served from memory; the accumulated deltas are written
+ * to hourly_energy_consumption as one multi-row upsert on a fixed interval, when the number of
+ * buffered measurements reaches a threshold, when a device rolls over to a
+ * new hour and on shutdown. The daily and monthly rollups are updated with the same deltas in
+ * the same transaction.
+ * <p>
+ * With the ingest log enabled, writes only happen when {@link IngestLogApplier} flushes, which
+ * commits the log position together with the deltas; buckets closed by a rollover wait for it.
+ */
+@Service
+public class HourlyConsumptionBuffer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HourlyConsumptionBuffer.class);
+
+    @Autowired
+    private HourlyEnergyConsumptionRepository hourlyEnergyConsumptionRepository;
+
+    @Autowired
+    private HourlyEnergyConsumptionUpsertRepository upsertRepository;
+
+    @Autowired
+    private EnergyConsumptionRollupRepository rollupRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DailyConsumptionCache dailyConsumptionCache;
+
+    @Value("${energy.consumption.buffer.max-pending:1000}")
+    private int maxPendingMeasurements;
+
+    @Value("${ingest.wal.enabled:false}")
+    private boolean deferWrites;
+
+    // A device's last bucket is dropped once flushed and idle this long, and the device with it
+    @Value("${energy.consumption.buffer.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+
+    private final Map<UUID, ConcurrentHashMap<LocalDateTime, HourAccumulator>> devices = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingMeasurements = new AtomicInteger();
+    // Closed buckets waiting for the next flush when writes are deferred
+    private final Queue<PendingWrite> closedWrites = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Adds a measurement to the (device, hour) bucket and returns the running hourly total.
+     */
+    public double add(UUID deviceId, LocalDateTime hourTimestamp, double measurementValue) {
+        double hourlyTotal;
+        while (true) {
+            HourAccumulator accumulator = resolve(deviceId, hourTimestamp);
+            Double total = accumulator.add(measurementValue);
+            if (total != null) {
+                hourlyTotal = total;
+                break;
+            }
+            // The bucket was closed by a rollover between lookup and add, look it up again
+        }
+
+        if (pendingMeasurements.incrementAndGet() >= maxPendingMeasurements && !deferWrites) {
+            flush();
+        }
+        return hourlyTotal;
+    }
+
+    /**
+     * Loads the (device, hour) bucket, reading its persisted total if it is not buffered yet,
+     * without adding anything to it.
+     */
+    public void prepare(UUID deviceId, LocalDateTime hourTimestamp) {
+        resolve(deviceId, hourTimestamp);
+    }
+
+    /**
+     * Returns the deltas not yet written to the database for the given device, keyed by hour.
+     */
+    public Map<LocalDateTime, Double> getPendingDeltas(UUID deviceId, LocalDateTime start, LocalDateTime end) {
+        Map<LocalDateTime, Double> deltas = new TreeMap<>();
+        Map<LocalDateTime, HourAccumulator> hours = devices.get(deviceId);
+        if (hours == null) {
+            return deltas;
+        }
+        hours.forEach((hour, accumulator) -> {
+            if (!hour.isBefore(start) && !hour.isAfter(end)) {
+                double pending = accumulator.pending();
+                if (pending != 0) {
+                    deltas.put(hour, pending);
+                }
+            }
+        });
+        for (PendingWrite write : closedWrites) {
+            if (write.deviceId().equals(deviceId) && !write.hourTimestamp().isBefore(start) && !write.hourTimestamp().isAfter(end)) {
+                deltas.merge(write.hourTimestamp(), write.delta(), Double::sum);
+            }
+        }
+        return deltas;
+    }
+
+    @Scheduled(fixedDelayString = "${energy.consumption.buffer.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        if (!deferWrites) {
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (deferWrites) {
+            // Deltas not flushed by the applier are replayed from the ingest log
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushAll(null);
+        } finally {
+            flushLock.unlock();
+        }
+        LOGGER.info("Flushed hourly consumption buffer on shutdown");
+    }
+
+    /**
+     * Writes every pending delta in one transaction. Skipped if another flush is already running.
+     */
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            flushAll(null);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending delta, waiting for a running flush, and runs the callback in the
+     * same transaction even if there is nothing to write. Returns whether the write committed.
+     */
+    public boolean flush(Runnable inTransaction) {
+        flushLock.lock();
+        try {
+            return flushAll(inTransaction);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean flushAll(Runnable inTransaction) {
+        pendingMeasurements.set(0);
+
+        List<PendingWrite> writes = new ArrayList<>();
+        for (PendingWrite closed; (closed = closedWrites.poll()) != null; ) {
+            writes.add(closed);
+        }
+        devices.forEach((deviceId, hours) -> hours.forEach((hour, accumulator) -> {
+            double delta = accumulator.drain();
+            if (delta != 0) {
+                writes.add(new PendingWrite(deviceId, hour, delta, accumulator));
+            }
+        }));
+
+        if ((!writes.isEmpty() || inTransaction != null) && !write(writes, inTransaction)) {
+            writes.forEach(this::restore);
+            return false;
+        }
+
+        evictClosedHours();
+        return true;
+    }
+
+    /**
+     * Drops clean buckets older than the newest hour seen for their device (late measurements
+     * for an already closed hour) and clean buckets idle for longer than the eviction time,
+     * then the devices left without buckets.
+     */
+    private void evictClosedHours() {
+        long idleSince = System.nanoTime() - idleEvictionMs * 1_000_000L;
+        devices.forEach((deviceId, hours) -> {
+            LocalDateTime newest = hours.keySet().stream().max(LocalDateTime::compareTo).orElse(null);
+            hours.forEach((hour, accumulator) -> {
+                boolean evictable = (newest != null && hour.isBefore(newest)) || accumulator.isIdleSince(idleSince);
+                if (evictable && accumulator.closeIfClean()) {
+                    hours.remove(hour, accumulator);
+                }
+            });
+            // Buckets are only added under the device's mapping, so an empty map stays empty once removed
+            devices.computeIfPresent(deviceId, (id, current) -> current.isEmpty() ? null : current);
+        });
+    }
+
+    private HourAccumulator resolve(UUID deviceId, LocalDateTime hourTimestamp) {
+        Map<LocalDateTime, HourAccumulator> known = devices.get(deviceId);
+        HourAccumulator accumulator = known != null ? known.get(hourTimestamp) : null;
+        if (accumulator != null) {
+            return accumulator;
+        }
+
+        // First measurement of this hour on this replica: load the persisted total once
+        double persistedTotal;
+        if (deferWrites) {
+            // The hour may have been closed with a delta still waiting for the applier's flush;
+            // holding the flush lock keeps that delta from reaching the database between the two reads
+            flushLock.lock();
+            try {
+                persistedTotal = loadPersistedTotal(deviceId, hourTimestamp) + closedDelta(deviceId, hourTimestamp);
+            } finally {
+                flushLock.unlock();
+            }
+        } else {
+            persistedTotal = loadPersistedTotal(deviceId, hourTimestamp);
+        }
+
+        HourAccumulator created = new HourAccumulator(persistedTotal);
+        HourAccumulator[] existing = new HourAccumulator[1];
+        ConcurrentHashMap<LocalDateTime, HourAccumulator> hours = devices.compute(deviceId, (id, current) -> {
+            ConcurrentHashMap<LocalDateTime, HourAccumulator> target = current != null ? current : new ConcurrentHashMap<>();
+            existing[0] = target.putIfAbsent(hourTimestamp, created);
+            return target;
+        });
+        if (existing[0] != null) {
+            return existing[0];
+        }
+
+        rollover(deviceId, hours, hourTimestamp);
+        return created;
+    }
+
+    private double loadPersistedTotal(UUID deviceId, LocalDateTime hourTimestamp) {
+        return hourlyEnergyConsumptionRepository
+                .findByDeviceIdAndHourTimestamp(deviceId, hourTimestamp)
+                .map(HourlyEnergyConsumption::getTotalEnergyConsumption)
+                .orElse(0.0);
+    }
+
+    /**
+     * Sums the deltas of the closed buckets of a (device, hour) still waiting for a flush.
+     */
+    private double closedDelta(UUID deviceId, LocalDateTime hourTimestamp) {
+        double delta = 0;
+        for (PendingWrite write : closedWrites) {
+            if (write.deviceId().equals(deviceId) && write.hourTimestamp().equals(hourTimestamp)) {
+                delta += write.delta();
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Closes and writes the buckets of a device that are older than the hour it just moved to.
+     */
+    private void rollover(UUID deviceId, Map<LocalDateTime, HourAccumulator> hours, LocalDateTime currentHour) {
+        List<PendingWrite> writes = new ArrayList<>();
+        hours.forEach((hour, accumulator) -> {
+            if (hour.isBefore(currentHour) && hours.remove(hour, accumulator)) {
+                double delta = accumulator.close();
+                if (delta != 0) {
+                    writes.add(new PendingWrite(deviceId, hour, delta, accumulator));
+                }
+            }
+        });
+
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        if (deferWrites) {
+            closedWrites.addAll(writes);
+            return;
+        }
+        LOGGER.debug("Device {} rolled over to hour {}, flushing {} closed hour(s)", deviceId, currentHour, writes.size());
+        if (!write(writes, null)) {
+            writes.forEach(this::restore);
+        }
+    }
+
+    private boolean write(List<PendingWrite> writes, Runnable inTransaction) {
+        List<HourlyEnergyConsumption> increments = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            HourlyEnergyConsumption increment = new HourlyEnergyConsumption();
+            increment.setDeviceId(write.deviceId());
+            increment.setHourTimestamp(write.hourTimestamp());
+            increment.setTotalEnergyConsumption(write.delta());
+            increments.add(increment);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!increments.isEmpty()) {
+                    upsertRepository.upsertIncrements(increments);
+                    rollupRepository.addIncrements(increments);
+                }
+                if (inTransaction != null) {
+                    inTransaction.run();
+                }
+            });
+            LOGGER.debug("Flushed {} hourly consumption bucket(s)", writes.size());
+
+            // Late measurements changed a closed day, cached responses on other replicas are stale now
+            writes.stream()
+                    .filter(write -> dailyConsumptionCache.isCacheable(write.hourTimestamp().toLocalDate()))
+                    .map(write -> Map.entry(write.deviceId(), write.hourTimestamp().toLocalDate()))
+                    .distinct()
+                    .forEach(day -> dailyConsumptionCache.broadcastInvalidation(day.getKey(), day.getValue()));
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Failed to flush {} hourly consumption bucket(s): {}", writes.size(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Puts a delta whose write failed back into the buffer so the next flush retries it.
+     */
+    private void restore(PendingWrite write) {
+        if (write.accumulator().undrain(write.delta())) {
+            return;
+        }
+
+        // The bucket was closed by a rollover, re-open it on top of the persisted total and of
+        // any closed write queued for the hour since
+        while (true) {
+            double persistedTotal = currentPersistedTotal(write.deviceId(), write.hourTimestamp())
+                    + closedDelta(write.deviceId(), write.hourTimestamp());
+            HourAccumulator[] accumulator = new HourAccumulator[1];
+            ConcurrentHashMap<LocalDateTime, HourAccumulator> hours = devices.compute(write.deviceId(), (id, current) -> {
+                ConcurrentHashMap<LocalDateTime, HourAccumulator> target = current != null ? current : new ConcurrentHashMap<>();
+                accumulator[0] = target.computeIfAbsent(write.hourTimestamp(), hour -> new HourAccumulator(persistedTotal));
+                return target;
+            });
+            if (accumulator[0].addPending(write.delta())) {
+                return;
+            }
+            hours.remove(write.hourTimestamp(), accumulator[0]);
+        }
+    }
+
+    private double currentPersistedTotal(UUID deviceId, LocalDateTime hourTimestamp) {
+        try {
+            Optional<HourlyEnergyConsumption> row = hourlyEnergyConsumptionRepository
+                    .findByDeviceIdAndHourTimestamp(deviceId, hourTimestamp);
+            return row.map(HourlyEnergyConsumption::getTotalEnergyConsumption).orElse(0.0);
+        } catch (Exception e) {
+            return 0.0;
+        }
+    }
+
+    private record PendingWrite(UUID deviceId, LocalDateTime hourTimestamp, double delta,
+                                HourAccumulator accumulator) {
+    }
+
+    private static final class HourAccumulator {
+        private double persistedTotal;
+        private double pendingDelta;
+        private boolean closed;
+        private long lastAddNanos = System.nanoTime();
+
+        HourAccumulator(double persistedTotal) {
+            this.persistedTotal = persistedTotal;
+        }
+
+        synchronized Double add(double value) {
+            if (closed) {
+                return null;
+            }
+            lastAddNanos = System.nanoTime();
+            pendingDelta += value;
+            return persistedTotal + pendingDelta;
+        }
+
+        synchronized double pending() {
+            return pendingDelta;
+        }
+
+        synchronized double drain() {
+            double delta = pendingDelta;
+            pendingDelta = 0;
+            persistedTotal += delta;
+            return delta;
+        }
+
+        synchronized double close() {
+            closed = true;
+            return drain();
+        }
+
+        synchronized boolean isIdleSince(long nanos) {
+            return lastAddNanos - nanos < 0;
+        }
+
+        synchronized boolean closeIfClean() {
+            if (pendingDelta != 0) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+
+        synchronized boolean undrain(double delta) {
+            if (closed) {
+                return false;
+            }
+            persistedTotal -= delta;
+            pendingDelta += delta;
+            return true;
+        }
+
+        synchronized boolean addPending(double delta) {
+            if (closed) {
+                return false;
+            }
+            pendingDelta += delta;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.platform.device.services;
+
+import com.platform.device.repositories.HourlyConsumptionPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps hourly_energy_consumption range partitioned by month on hour_timestamp.
+ * <p>
+ * On startup duplicate (device, hour) rows are merged and the unique index on them is
+ * created if missing, failing the startup if that is not possible, and a plain table (as
+ * created by Hibernate, or left by an older version) is converted in place. Then, on a schedule, partitions are created {@code months-ahead} in
+ * advance and partitions older than {@code retention-months} are detached (or dropped),
+ * which is a metadata operation instead of a large DELETE. Long-range totals stay available
+ * in the daily and monthly rollups after their hourly rows are gone.
+ */
+@Service
+public class HourlyConsumptionPartitionManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HourlyConsumptionPartitionManager.class);
+
+    @Autowired
+    private HourlyConsumptionPartitionRepository partitionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${energy.consumption.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 keeps every partition
+    @Value("${energy.consumption.partitions.retention-months:24}")
+    private int retentionMonths;
+
+    // detach keeps expired months as standalone tables, drop deletes them
+    @Value("${energy.consumption.partitions.retention-action:detach}")
+    private String retentionAction;
+
+    @PostConstruct
+    public void init() {
+        // Not caught: the upserts double count without the unique index, better not to start
+        transactionTemplate.executeWithoutResult(status -> ensureUniqueDeviceHours());
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${energy.consumption.partitions.maintenance-interval-ms:3600000}",
+            initialDelayString = "${energy.consumption.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> maintainPartitions());
+        } catch (Exception e) {
+            LOGGER.error("Hourly consumption partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Merges duplicate (device, hour) rows, which an older version could leave behind, and
+     * creates the unique index on them if the schema update could not.
+     */
+    private void ensureUniqueDeviceHours() {
+        partitionRepository.lock();
+        if (!partitionRepository.exists()) {
+            return;
+        }
+        int merged = partitionRepository.mergeDuplicateHours();
+        if (merged > 0) {
+            LOGGER.warn("Merged duplicate hourly consumption rows of {} device hours", merged);
+        }
+        partitionRepository.createDeviceHourIndex();
+        if (!partitionRepository.hasDeviceHourIndex()) {
+            throw new IllegalStateException("hourly_energy_consumption has no unique (device_id, hour_timestamp) index");
+        }
+    }
+
+    private void maintainPartitions() {
+        // Replicas run this concurrently, the advisory lock lets one at a time through
+        partitionRepository.lock();
+        if (!partitionRepository.exists()) {
+            return;
+        }
+        if (!partitionRepository.isPartitioned()) {
+            LOGGER.info("Converting hourly_energy_consumption to a monthly partitioned table");
+            partitionRepository.convertToPartitioned();
+        }
+
+        Set<YearMonth> existing = new HashSet<>(partitionRepository.listPartitions());
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (existing.add(month)) {
+                partitionRepository.createPartition(month);
+                LOGGER.info("Created hourly consumption partition for {}", month);
+            }
+        }
+
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        boolean drop = "drop".equalsIgnoreCase(retentionAction);
+        for (YearMonth month : existing) {
+            if (month.isBefore(oldestKept)) {
+                partitionRepository.detachPartition(month, drop);
+                LOGGER.info("{} hourly consumption partition for {} (retention {} months)",
+                        drop ? "Dropped" : "Detached", month, retentionMonths);
+            }
+        }
+        int stale = partitionRepository.deleteDefaultRowsBefore(oldestKept);
+        if (stale > 0) {
+            LOGGER.info("Deleted {} hourly rows older than {} from the default partition", stale, oldestKept);
+        }
+    }
+}
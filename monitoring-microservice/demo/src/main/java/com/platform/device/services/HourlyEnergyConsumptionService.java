@@ -1,27 +1,28 @@
 package com.platform.device.services;
 
-import com.platform.device.config.RabbitMQConfig;
 import com.platform.device.dtos.DailyEnergyConsumptionDTO;
 import com.platform.device.dtos.HourlyConsumptionDTO;
-import com.platform.device.dtos.RealtimeConsumptionDTO;
-import com.platform.device.entities.Device;
 import com.platform.device.entities.HourlyEnergyConsumption;
-import com.platform.device.messaging.OverconsumptionNotificationMessage;
-import com.platform.device.repositories.DeviceRepository;
 import com.platform.device.repositories.HourlyEnergyConsumptionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,91 +33,52 @@ public class HourlyEnergyConsumptionService {
         private HourlyEnergyConsumptionRepository hourlyEnergyConsumptionRepository;
 
         @Autowired
-        private DeviceRepository deviceRepository;
+        private DeviceRegistry deviceRegistry;
 
-        @Autowired(required = false)
-        private SimpMessagingTemplate messagingTemplate;
+        @Autowired
+        private HourlyConsumptionBuffer hourlyConsumptionBuffer;
+
+        @Autowired
+        private DailyConsumptionCache dailyConsumptionCache;
+
+        @Autowired
+        private RawMeasurementStore rawMeasurementStore;
+
+        @Autowired
+        private RealtimeConsumptionPublisher realtimeConsumptionPublisher;
 
         @Autowired
-        private RabbitTemplate rabbitTemplate;
+        private OverconsumptionDetector overconsumptionDetector;
 
-        @Value("${energy.consumption.threshold:100.0}")
-        private Double consumptionThreshold;
+        @Autowired
+        private PlatformTransactionManager transactionManager;
+
+        // Devices per query of a batch read, bounds what is buffered between the query and the consumer
+        @Value("${energy.consumption.batch.read-chunk-devices:50}")
+        private int batchReadChunkDevices;
 
         public void processMeasurement(UUID deviceId, LocalDateTime timestamp, Double measurementValue) {
                 LocalDateTime hourTimestamp = timestamp.withMinute(0).withSecond(0).withNano(0);
 
-                Optional<HourlyEnergyConsumption> existingConsumption = hourlyEnergyConsumptionRepository
-                                .findByDeviceIdAndHourTimestamp(deviceId, hourTimestamp);
-
-                Double hourlyTotal;
-                if (existingConsumption.isPresent()) {
-                        HourlyEnergyConsumption consumption = existingConsumption.get();
-                        consumption.setTotalEnergyConsumption(
-                                        consumption.getTotalEnergyConsumption() + measurementValue);
-                        hourlyTotal = consumption.getTotalEnergyConsumption();
-                        hourlyEnergyConsumptionRepository.save(consumption);
-                        LOGGER.debug("Updated hourly energy consumption for device {} at hour {}: {}",
-                                        deviceId, hourTimestamp, hourlyTotal);
-                } else {
-                        HourlyEnergyConsumption newConsumption = new HourlyEnergyConsumption();
-                        newConsumption.setDeviceId(deviceId);
-                        newConsumption.setHourTimestamp(hourTimestamp);
-                        newConsumption.setTotalEnergyConsumption(measurementValue);
-                        hourlyTotal = measurementValue;
-                        hourlyEnergyConsumptionRepository.save(newConsumption);
-                        LOGGER.debug("Created hourly energy consumption for device {} at hour {}: {}",
-                                        deviceId, hourTimestamp, measurementValue);
-                }
+                rawMeasurementStore.append(deviceId, timestamp, measurementValue);
 
-                publishRealtimeUpdate(deviceId, timestamp, measurementValue, hourTimestamp, hourlyTotal);
+                Double hourlyTotal = hourlyConsumptionBuffer.add(deviceId, hourTimestamp, measurementValue);
+                // A late measurement changes a day whose response may be cached
+                dailyConsumptionCache.invalidate(deviceId, hourTimestamp.toLocalDate());
+                LOGGER.debug("Buffered hourly energy consumption for device {} at hour {}: {}",
+                                deviceId, hourTimestamp, hourlyTotal);
 
-                // Check for overconsumption threshold
-                checkAndNotifyOverconsumption(deviceId, hourlyTotal, timestamp);
+                realtimeConsumptionPublisher.offer(deviceId, timestamp, measurementValue, hourTimestamp, hourlyTotal);
+
+                overconsumptionDetector.evaluate(deviceId, timestamp, measurementValue, hourlyTotal);
         }
 
-        private void checkAndNotifyOverconsumption(UUID deviceId, Double hourlyConsumption, LocalDateTime timestamp) {
-                if (hourlyConsumption != null && hourlyConsumption > consumptionThreshold) {
-                        LOGGER.warn("Device {} exceeded consumption threshold: {} > {}", deviceId, hourlyConsumption,
-                                        consumptionThreshold);
-
-                        try {
-                                // Get device name from local repository
-                                String deviceName = "Unknown Device";
-                                Optional<Device> device = deviceRepository.findById(deviceId);
-                                if (device.isPresent() && device.get().getName() != null) {
-                                        deviceName = device.get().getName();
-                                }
-
-                                // Create notification for device (not user-specific, since device can have
-                                // multiple owners)
-                                OverconsumptionNotificationMessage notification = new OverconsumptionNotificationMessage();
-                                notification.setDeviceId(deviceId);
-                                notification.setUserId(null); // Not user-specific, device can have multiple owners
-                                notification.setDeviceName(deviceName);
-                                notification.setCurrentConsumption(hourlyConsumption);
-                                notification.setThreshold(consumptionThreshold);
-                                notification.setTimestamp(timestamp);
-
-                                rabbitTemplate.convertAndSend(
-                                                RabbitMQConfig.OVERCONSUMPTION_NOTIFICATIONS_EXCHANGE,
-                                                RabbitMQConfig.OVERCONSUMPTION_NOTIFICATION_ROUTING_KEY,
-                                                notification);
-
-                                // Also send via WebSocket
-                                if (messagingTemplate != null) {
-                                        messagingTemplate.convertAndSend(
-                                                        "/exchange/amq.topic/notifications.device." + deviceId,
-                                                        notification);
-                                }
-
-                                LOGGER.info("Published overconsumption notification for device {}", deviceId);
-                        } catch (Exception e) {
-                                LOGGER.error("Failed to send overconsumption notification for device {}: {}", deviceId,
-                                                e.getMessage(),
-                                                e);
-                        }
-                }
+        /**
+         * Does the database reads of {@link #processMeasurement} ahead of it, so they can fail
+         * before any measurement of a batch is applied.
+         */
+        public void prepareMeasurement(UUID deviceId, LocalDateTime timestamp) {
+                hourlyConsumptionBuffer.prepare(deviceId, timestamp.withMinute(0).withSecond(0).withNano(0));
         }
 
         public DailyEnergyConsumptionDTO getDailyConsumption(UUID deviceId, LocalDate date) {
@@ -127,11 +89,54 @@ public class HourlyEnergyConsumptionService {
                                 .findByDeviceIdAndHourTimestampBetween(
                                                 deviceId, startOfDay, endOfDay);
 
-                List<HourlyConsumptionDTO> hourlyConsumptions = consumptions.stream()
-                                .map(consumption -> new HourlyConsumptionDTO(
-                                                consumption.getHourTimestamp(),
-                                                consumption.getTotalEnergyConsumption()))
-                                .sorted((a, b) -> a.getHourTimestamp().compareTo(b.getHourTimestamp()))
+                // Overlay deltas that are still in the write-behind buffer
+                Map<LocalDateTime, Double> hourlyTotals = new TreeMap<>();
+                consumptions.forEach(consumption -> hourlyTotals.merge(
+                                consumption.getHourTimestamp(),
+                                consumption.getTotalEnergyConsumption(),
+                                Double::sum));
+                hourlyConsumptionBuffer.getPendingDeltas(deviceId, startOfDay, endOfDay)
+                                .forEach((hour, delta) -> hourlyTotals.merge(hour, delta, Double::sum));
+
+                return toDailyConsumption(deviceId, date, hourlyTotals);
+        }
+
+        /**
+         * Daily consumption of several devices over a date range, handed to the action one
+         * device-day at a time, grouped by device and ordered by date. Device-days without any
+         * consumption are skipped.
+         * <p>
+         * Devices are read read-chunk-devices at a time, one query each, and a chunk is only
+         * handed to the action once its query finished, so a slow consumer (e.g. a client
+         * reading the response slowly) never holds a database connection.
+         */
+        public void forEachDailyConsumption(Collection<UUID> deviceIds, LocalDate startDate, LocalDate endDate,
+                        Consumer<DailyEnergyConsumptionDTO> action) {
+                LocalDateTime start = startDate.atStartOfDay();
+                LocalDateTime end = endDate.atTime(23, 59, 59);
+
+                // Read-only transaction so the driver streams the rows through a cursor
+                TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+                readOnly.setReadOnly(true);
+
+                List<UUID> devices = List.copyOf(deviceIds);
+                int chunkSize = Math.max(1, batchReadChunkDevices);
+                for (int from = 0; from < devices.size(); from += chunkSize) {
+                        List<UUID> chunk = devices.subList(from, Math.min(devices.size(), from + chunkSize));
+                        List<DailyEnergyConsumptionDTO> days = new ArrayList<>();
+                        DeviceSeriesCollector collector = new DeviceSeriesCollector(chunk, start, end, days::add);
+                        readOnly.executeWithoutResult(status -> hourlyEnergyConsumptionRepository
+                                        .forEachByDeviceIdInAndHourTimestampBetween(chunk, start, end, collector));
+                        collector.finishRemaining();
+
+                        days.forEach(action);
+                }
+        }
+
+        private DailyEnergyConsumptionDTO toDailyConsumption(UUID deviceId, LocalDate date,
+                        Map<LocalDateTime, Double> hourlyTotals) {
+                List<HourlyConsumptionDTO> hourlyConsumptions = hourlyTotals.entrySet().stream()
+                                .map(entry -> new HourlyConsumptionDTO(entry.getKey(), entry.getValue()))
                                 .collect(Collectors.toList());
 
                 Double totalConsumption = hourlyConsumptions.stream()
@@ -145,21 +150,62 @@ public class HourlyEnergyConsumptionService {
                                 hourlyConsumptions);
         }
 
-        private void publishRealtimeUpdate(UUID deviceId, LocalDateTime timestamp,
-                        Double measurementValue, LocalDateTime hourTimestamp,
-                        Double hourlyTotal) {
-                if (messagingTemplate != null) {
-                        RealtimeConsumptionDTO update = new RealtimeConsumptionDTO(
-                                        deviceId,
-                                        timestamp,
-                                        measurementValue,
-                                        hourTimestamp,
-                                        hourlyTotal);
-
-                        // Send to device-specific topic
-                        messagingTemplate.convertAndSend("/exchange/amq.topic/consumption." + deviceId, update);
-
-                        LOGGER.debug("Published real-time consumption update for device {}", deviceId);
+        /**
+         * Gathers the streamed rows of one device at a time, overlays its buffered deltas and
+         * emits one DTO per day once the stream moves on to the next device.
+         */
+        private final class DeviceSeriesCollector implements Consumer<HourlyEnergyConsumption> {
+                private final Set<UUID> remainingDevices;
+                private final LocalDateTime start;
+                private final LocalDateTime end;
+                private final Consumer<DailyEnergyConsumptionDTO> action;
+
+                private UUID deviceId;
+                private final TreeMap<LocalDateTime, Double> hourlyTotals = new TreeMap<>();
+
+                DeviceSeriesCollector(Collection<UUID> deviceIds, LocalDateTime start, LocalDateTime end,
+                                Consumer<DailyEnergyConsumptionDTO> action) {
+                        this.remainingDevices = new LinkedHashSet<>(deviceIds);
+                        this.start = start;
+                        this.end = end;
+                        this.action = action;
+                }
+
+                @Override
+                public void accept(HourlyEnergyConsumption row) {
+                        if (!row.getDeviceId().equals(deviceId)) {
+                                finishDevice();
+                                deviceId = row.getDeviceId();
+                        }
+                        hourlyTotals.merge(row.getHourTimestamp(), row.getTotalEnergyConsumption(), Double::sum);
+                }
+
+                /**
+                 * Emits the current device and the devices that only have buffered deltas.
+                 */
+                void finishRemaining() {
+                        finishDevice();
+                        for (UUID remaining : List.copyOf(remainingDevices)) {
+                                deviceId = remaining;
+                                finishDevice();
+                        }
+                }
+
+                private void finishDevice() {
+                        if (deviceId == null) {
+                                return;
+                        }
+                        remainingDevices.remove(deviceId);
+                        hourlyConsumptionBuffer.getPendingDeltas(deviceId, start, end)
+                                        .forEach((hour, delta) -> hourlyTotals.merge(hour, delta, Double::sum));
+
+                        while (!hourlyTotals.isEmpty()) {
+                                LocalDate date = hourlyTotals.firstKey().toLocalDate();
+                                Map<LocalDateTime, Double> day = hourlyTotals.headMap(date.plusDays(1).atStartOfDay());
+                                action.accept(toDailyConsumption(deviceId, date, new TreeMap<>(day)));
+                                day.clear();
+                        }
+                        deviceId = null;
                 }
         }
 }
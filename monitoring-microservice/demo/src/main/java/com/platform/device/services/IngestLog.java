@@ -0,0 +1,342 @@
+package com.platform.device.services;
+
+import com.platform.device.messaging.MeasurementBatch;
+import com.platform.device.messaging.MeasurementWireFormat;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only log of accepted measurements, so the ingest listener can ack RabbitMQ as
+ * soon as a batch is durable on disk instead of waiting for the database.
+ * <p>
+ * The log is a directory of memory-mapped segments of fixed size named by a sequence number.
+ * Each record is the {@link MeasurementWireFormat} layout (32 bytes) followed by a CRC32C of
+ * it (4). On startup the segments are scanned up to the first record with
+ * a bad checksum, which drops a torn write, and the rest of the last segment is zeroed.
+ * {@link IngestLogApplier} reads the log and deletes segments once they are applied.
+ * <p>
+ * The directory also holds a random log id, created with it. The applier stores it with its
+ * checkpoint, so a checkpoint of another log (the volume was recreated, or the replica slot
+ * moved to another node) is recognized instead of being applied to this one.
+ */
+@Service
+public class IngestLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestLog.class);
+
+    private static final int PAYLOAD_SIZE = MeasurementWireFormat.RECORD_SIZE;
+    static final int RECORD_SIZE = PAYLOAD_SIZE + 4;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOG_ID_FILE = "log-id";
+
+    @Value("${ingest.wal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingest.wal.directory:/var/lib/monitoring/wal}")
+    private String directory;
+
+    @Value("${REPLICA_ID:1}")
+    private String replicaId;
+
+    @Value("${ingest.wal.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    // Once this many segments are waiting to be applied, appends fail and RabbitMQ holds the messages
+    @Value("${ingest.wal.max-segments:64}")
+    private int maxSegments;
+
+    // msync every appended batch before it is acked; without it only a process crash is covered
+    @Value("${ingest.wal.fsync:true}")
+    private boolean fsync;
+
+    private Path segmentDirectory;
+    private String logId;
+    // The log id was created on this startup, so no checkpoint can refer to this log
+    private boolean created;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32C appendChecksum = new CRC32C();
+    private Segment active;
+
+    public record Position(long segment, int offset) {
+    }
+
+    public record LoggedMeasurement(UUID deviceId, LocalDateTime timestamp, double value, Position next) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        segmentDirectory = Paths.get(directory, "replica-" + replicaId);
+        Files.createDirectories(segmentDirectory);
+        Path logIdFile = segmentDirectory.resolve(LOG_ID_FILE);
+        if (Files.exists(logIdFile)) {
+            logId = Files.readString(logIdFile).trim();
+        } else {
+            logId = UUID.randomUUID().toString();
+            Path temporary = segmentDirectory.resolve(LOG_ID_FILE + ".tmp");
+            Files.writeString(temporary, logId);
+            Files.move(temporary, logIdFile, StandardCopyOption.ATOMIC_MOVE);
+            created = true;
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(segmentDirectory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            Segment segment = map(file, parseSequence(file));
+            segment.limit = scan(segment.buffer);
+            segment.sealed = true;
+            segments.put(segment.sequence, segment);
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(0);
+        } else {
+            active = segments.lastEntry().getValue();
+            active.sealed = false;
+            // Zero whatever a crash left after the last valid record, so it is never read back
+            byte[] zeros = new byte[8192];
+            for (int offset = active.limit; offset < active.buffer.capacity(); offset += zeros.length) {
+                active.buffer.put(offset, zeros, 0, Math.min(zeros.length, active.buffer.capacity() - offset));
+            }
+            active.buffer.force();
+        }
+        LOGGER.info("Opened ingest log {} in {}: {} segment(s), appending to segment {} at offset {}",
+                logId, segmentDirectory, segments.size(), active.sequence, active.limit);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String replicaId() {
+        return replicaId;
+    }
+
+    public String logId() {
+        return logId;
+    }
+
+    public boolean isCreated() {
+        return created;
+    }
+
+    /**
+     * Appends measurements and returns once they are durable. Either the whole batch is
+     * appended or, if the log is full, none of it.
+     */
+    public void append(MeasurementBatch measurements) throws IOException {
+        appendLock.lock();
+        try {
+            int recordsPerSegment = segmentBytes / RECORD_SIZE;
+            int freeInActive = (active.buffer.capacity() - active.limit) / RECORD_SIZE;
+            int newSegments = Math.max(0, Math.ceilDiv(measurements.size() - freeInActive, recordsPerSegment));
+            if (segments.size() + newSegments > maxSegments) {
+                throw new IOException("Ingest log is full (" + segments.size() + " segments not applied yet)");
+            }
+
+            int start = active.limit;
+            int offset = start;
+            for (int i = 0; i < measurements.size(); i++) {
+                if (offset + RECORD_SIZE > active.buffer.capacity()) {
+                    publish(start, offset);
+                    active.sealed = true;
+                    active = createSegment(active.sequence + 1);
+                    start = 0;
+                    offset = 0;
+                }
+                writeRecord(active.buffer, offset, measurements, i);
+                offset += RECORD_SIZE;
+            }
+            publish(start, offset);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Position of the oldest record still in the log.
+     */
+    public Position start() {
+        return new Position(segments.firstKey(), 0);
+    }
+
+    /**
+     * Whether a position lies within the records of this log.
+     */
+    public boolean contains(Position position) {
+        Segment segment = segments.get(position.segment());
+        return segment != null && position.offset() >= 0 && position.offset() <= segment.limit
+                && position.offset() % RECORD_SIZE == 0;
+    }
+
+    /**
+     * Reads up to maxRecords durable records starting at a position. Each record carries the
+     * position right after it.
+     */
+    public List<LoggedMeasurement> read(Position from, int maxRecords) {
+        List<LoggedMeasurement> records = new ArrayList<>();
+        Map.Entry<Long, Segment> entry = segments.ceilingEntry(from.segment());
+        if (entry == null) {
+            return records;
+        }
+        Segment segment = entry.getValue();
+        int offset = segment.sequence == from.segment() ? from.offset() : 0;
+
+        while (records.size() < maxRecords) {
+            // Read sealed before limit: a sealed segment's limit is final
+            boolean sealed = segment.sealed;
+            int limit = segment.limit;
+            if (offset + RECORD_SIZE <= limit) {
+                records.add(readRecord(segment, offset));
+                offset += RECORD_SIZE;
+                continue;
+            }
+            Map.Entry<Long, Segment> next = sealed ? segments.higherEntry(segment.sequence) : null;
+            if (next == null) {
+                break;
+            }
+            segment = next.getValue();
+            offset = 0;
+        }
+        return records;
+    }
+
+    /**
+     * Deletes the sealed segments before the given one, whose records are all applied.
+     */
+    public void deleteSegmentsBefore(long sequence) {
+        for (Segment segment : segments.headMap(sequence).values()) {
+            if (!segment.sealed) {
+                continue;
+            }
+            segments.remove(segment.sequence);
+            try {
+                Files.deleteIfExists(segment.path);
+                LOGGER.debug("Deleted applied ingest log segment {}", segment.path);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete ingest log segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private void writeRecord(MappedByteBuffer target, int offset, MeasurementBatch measurements, int index) {
+        recordBuffer.clear();
+        recordBuffer.putLong(measurements.deviceIdMostSignificantBits(index))
+                .putLong(measurements.deviceIdLeastSignificantBits(index))
+                .putLong(measurements.epochMicros(index))
+                .putDouble(measurements.value(index));
+        appendChecksum.reset();
+        appendChecksum.update(recordBuffer.array(), 0, PAYLOAD_SIZE);
+        recordBuffer.putInt((int) appendChecksum.getValue());
+        target.put(offset, recordBuffer.array());
+    }
+
+    private static LoggedMeasurement readRecord(Segment segment, int offset) {
+        MappedByteBuffer buffer = segment.buffer;
+        UUID deviceId = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+        long epochMicros = buffer.getLong(offset + 16);
+        LocalDateTime timestamp = MeasurementWireFormat.toLocalDateTime(epochMicros);
+        double value = buffer.getDouble(offset + 24);
+        return new LoggedMeasurement(deviceId, timestamp, value, new Position(segment.sequence, offset + RECORD_SIZE));
+    }
+
+    /**
+     * Makes the records written to the active segment between start and end durable and
+     * visible to the reader.
+     */
+    private void publish(int start, int end) {
+        if (end == start) {
+            return;
+        }
+        if (fsync) {
+            active.buffer.force(start, end - start);
+        }
+        active.limit = end;
+    }
+
+    /**
+     * Length of the valid prefix of a segment.
+     */
+    private static int scan(MappedByteBuffer buffer) {
+        CRC32C checksum = new CRC32C();
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        int offset = 0;
+        while (offset + RECORD_SIZE <= buffer.capacity()) {
+            buffer.get(offset, payload);
+            checksum.reset();
+            checksum.update(payload);
+            // An all-zero record never matches, its CRC32C is not zero
+            if ((int) checksum.getValue() != buffer.getInt(offset + PAYLOAD_SIZE)) {
+                break;
+            }
+            offset += RECORD_SIZE;
+        }
+        return offset;
+    }
+
+    private Segment createSegment(long sequence) throws IOException {
+        Path file = segmentDirectory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+        Segment segment = map(file, sequence);
+        segments.put(sequence, segment);
+        LOGGER.debug("Created ingest log segment {}", file);
+        return segment;
+    }
+
+    private Segment map(Path file, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Existing segments keep their size if segment-bytes changed since they were created
+            long size = Math.max(channel.size(), segmentBytes - segmentBytes % RECORD_SIZE);
+            // The mapping stays valid after the channel is closed
+            return new Segment(sequence, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static long parseSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        // Bytes of durable records, written under the append lock
+        private volatile int limit;
+        // No more appends once set
+        private volatile boolean sealed;
+
+        Segment(long sequence, Path path, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.platform.device.services;
+
+import com.platform.device.entities.IngestLogCheckpoint;
+import com.platform.device.repositories.IngestLogCheckpointRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drains the {@link IngestLog} into the hourly consumption buffer and flushes it in large
+ * batches, committing the log position in the same transaction as the totals.
+ * <p>
+ * On startup it resumes from the committed position, which replays whatever was appended but
+ * not written before a crash. A checkpoint of another log, or past the end of this one, is
+ * not trusted: the whole log is replayed instead of acked measurements being skipped. While the database is unavailable it keeps retrying the last
+ * flush and stops reading, so the backlog stays on disk instead of in memory.
+ */
+@Service
+public class IngestLogApplier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestLogApplier.class);
+
+    @Autowired
+    private IngestLog ingestLog;
+
+    @Autowired
+    private HourlyEnergyConsumptionService hourlyEnergyConsumptionService;
+
+    @Autowired
+    private HourlyConsumptionBuffer hourlyConsumptionBuffer;
+
+    @Autowired
+    private IngestLogCheckpointRepository checkpointRepository;
+
+    @Value("${ingest.wal.apply-batch-size:20000}")
+    private int batchSize;
+
+    // Applied to the buffer, and committed to the database
+    private IngestLog.Position readPosition;
+    private IngestLog.Position committedPosition;
+    private final ReentrantLock applyLock = new ReentrantLock();
+
+    @Scheduled(fixedDelayString = "${ingest.wal.apply-interval-ms:1000}")
+    public void apply() {
+        if (!ingestLog.isEnabled() || !applyLock.tryLock()) {
+            return;
+        }
+        try {
+            applyPending();
+        } catch (Exception e) {
+            LOGGER.error("Failed to apply the ingest log at {}: {}", readPosition, e.getMessage(), e);
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!ingestLog.isEnabled()) {
+            return;
+        }
+        applyLock.lock();
+        try {
+            applyPending();
+            LOGGER.info("Applied the ingest log up to {} on shutdown", committedPosition);
+        } catch (Exception e) {
+            LOGGER.warn("Ingest log not fully applied on shutdown, it is replayed on restart: {}", e.getMessage());
+        } finally {
+            applyLock.unlock();
+        }
+    }
+
+    private void applyPending() {
+        if (readPosition == null) {
+            committedPosition = checkpointRepository.findById(ingestLog.replicaId())
+                    .map(this::resumePosition)
+                    .orElseGet(ingestLog::start);
+            readPosition = committedPosition;
+            LOGGER.info("Replaying the ingest log from {}", committedPosition);
+        }
+
+        while (true) {
+            // A previous flush failed, it has to commit before more is read
+            if (!readPosition.equals(committedPosition) && !commit()) {
+                return;
+            }
+
+            List<IngestLog.LoggedMeasurement> batch = ingestLog.read(readPosition, batchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (IngestLog.LoggedMeasurement measurement : batch) {
+                hourlyEnergyConsumptionService.processMeasurement(
+                        measurement.deviceId(), measurement.timestamp(), measurement.value());
+                readPosition = measurement.next();
+            }
+            if (!commit() || batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Where to resume from a stored checkpoint, or the start of the log if the checkpoint
+     * does not belong to it.
+     */
+    private IngestLog.Position resumePosition(IngestLogCheckpoint checkpoint) {
+        IngestLog.Position position = new IngestLog.Position(checkpoint.getSegment(), checkpoint.getSegmentOffset());
+        // Checkpoints from before log ids are trusted unless the log is new
+        boolean sameLog = checkpoint.getLogId() != null
+                ? checkpoint.getLogId().equals(ingestLog.logId())
+                : !ingestLog.isCreated();
+        if (!sameLog) {
+            LOGGER.warn("Ingest log checkpoint {} belongs to log {}, not {}; replaying this log from the start",
+                    position, checkpoint.getLogId(), ingestLog.logId());
+            return ingestLog.start();
+        }
+        if (!ingestLog.contains(position)) {
+            LOGGER.warn("Ingest log checkpoint {} is outside log {}; replaying it from the start",
+                    position, ingestLog.logId());
+            return ingestLog.start();
+        }
+        return position;
+    }
+
+    private boolean commit() {
+        IngestLog.Position position = readPosition;
+        boolean committed = hourlyConsumptionBuffer.flush(() -> checkpointRepository.save(
+                new IngestLogCheckpoint(ingestLog.replicaId(), ingestLog.logId(), position.segment(), position.offset())));
+        if (committed) {
+            committedPosition = position;
+            ingestLog.deleteSegmentsBefore(position.segment());
+        }
+        return committed;
+    }
+}
@@ -0,0 +1,361 @@
+package com.platform.device.services;
+
+import com.platform.device.config.RabbitMQConfig;
+import com.platform.device.entities.AlertThreshold;
+import com.platform.device.messaging.OverconsumptionNotificationMessage;
+import com.platform.device.repositories.AlertThresholdRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per-device overconsumption alerts, evaluated on every measurement against three rules:
+ * the hourly total, the sum over a sliding window and the increase of the measured value
+ * per minute. Thresholds come from the device's {@link AlertThreshold}, then its type's,
+ * then the configured defaults; a threshold of 0 disables the rule.
+ * <p>
+ * Each device moves through OK, ALERTING and COOLDOWN, and one notification is published
+ * per transition: entering ALERTING (a rule is breached), COOLDOWN (every rule is back under
+ * clear-ratio times its threshold) and OK (the cooldown has passed, in measurement time).
+ * Breaches during the cooldown are ignored; a breach by the first measurement after it goes
+ * straight to ALERTING with a single notification.
+ * <p>
+ * Alerts of devices that sent nothing for idle-eviction-ms are dropped (a cooldown longer
+ * than that if they are not OK), so deleted and silent devices do not stay in memory.
+ */
+@Service
+public class OverconsumptionDetector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OverconsumptionDetector.class);
+
+    public enum AlertState {
+        OK, ALERTING, COOLDOWN
+    }
+
+    @Autowired
+    private AlertThresholdRepository alertThresholdRepository;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired(required = false)
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${energy.consumption.threshold:100.0}")
+    private double defaultHourlyThreshold;
+
+    @Value("${energy.consumption.alerts.window-threshold:0}")
+    private double defaultWindowThreshold;
+
+    @Value("${energy.consumption.alerts.window-minutes:60}")
+    private long windowMinutes;
+
+    @Value("${energy.consumption.alerts.rate-threshold:0}")
+    private double defaultRateThreshold;
+
+    @Value("${energy.consumption.alerts.cooldown-minutes:60}")
+    private long cooldownMinutes;
+
+    // An alert clears below this fraction of the threshold, so a value hovering around it does not flap
+    @Value("${energy.consumption.alerts.clear-ratio:0.9}")
+    private double clearRatio;
+
+    @Value("${energy.consumption.alerts.idle-eviction-ms:3600000}")
+    private long idleEvictionMs;
+
+    private volatile Map<UUID, AlertThreshold> deviceThresholds = Map.of();
+    private volatile Map<String, AlertThreshold> typeThresholds = Map.of();
+    private final ConcurrentHashMap<UUID, DeviceAlert> alerts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        refreshThresholds();
+    }
+
+    /**
+     * Reloads the per-device and per-type thresholds, also picking up changes made through
+     * other replicas.
+     */
+    @Scheduled(fixedDelayString = "${energy.consumption.alerts.threshold-refresh-ms:60000}",
+            initialDelayString = "${energy.consumption.alerts.threshold-refresh-ms:60000}")
+    public void refreshThresholds() {
+        try {
+            Map<UUID, AlertThreshold> byDevice = new HashMap<>();
+            Map<String, AlertThreshold> byType = new HashMap<>();
+            for (AlertThreshold threshold : alertThresholdRepository.findAll()) {
+                if (threshold.getDeviceId() != null) {
+                    byDevice.put(threshold.getDeviceId(), threshold);
+                } else if (threshold.getDeviceType() != null) {
+                    byType.put(threshold.getDeviceType(), threshold);
+                }
+            }
+            deviceThresholds = byDevice;
+            typeThresholds = byType;
+        } catch (Exception e) {
+            LOGGER.error("Failed to load alert thresholds, keeping the previous ones: {}", e.getMessage());
+        }
+    }
+
+    public AlertState getState(UUID deviceId) {
+        DeviceAlert alert = alerts.get(deviceId);
+        return alert != null ? alert.state() : AlertState.OK;
+    }
+
+    /**
+     * Feeds a measurement and the device's running hourly total to its alert, publishing a
+     * notification if the alert changed state.
+     */
+    public void evaluate(UUID deviceId, LocalDateTime timestamp, double measurementValue, double hourlyTotal) {
+        Thresholds thresholds = resolveThresholds(deviceId);
+        Transition transition;
+        while (true) {
+            DeviceAlert alert = alerts.computeIfAbsent(deviceId, id -> new DeviceAlert());
+            synchronized (alert) {
+                if (alert.evicted) {
+                    // Evicted between lookup and update, look it up again
+                    continue;
+                }
+                transition = alert.update(timestamp, measurementValue, hourlyTotal, thresholds);
+            }
+            break;
+        }
+        if (transition != null) {
+            publish(deviceId, timestamp, transition);
+        }
+    }
+
+    /**
+     * Drops the alerts of devices idle for longer than idle-eviction-ms, plus the cooldown for
+     * alerts that are not OK.
+     */
+    @Scheduled(fixedDelayString = "${energy.consumption.alerts.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        long okIdleSince = now - idleEvictionMs * 1_000_000L;
+        long activeIdleSince = okIdleSince - cooldownMinutes * 60_000_000_000L;
+        alerts.forEach((deviceId, alert) -> {
+            if (alert.evictIfIdle(okIdleSince, activeIdleSince)) {
+                alerts.remove(deviceId, alert);
+            }
+        });
+    }
+
+    private Thresholds resolveThresholds(UUID deviceId) {
+        AlertThreshold device = deviceThresholds.get(deviceId);
+        String type = deviceRegistry.getType(deviceId);
+        AlertThreshold byType = type != null ? typeThresholds.get(type) : null;
+        return new Thresholds(
+                pick(device, byType, AlertThreshold::getHourlyThreshold, defaultHourlyThreshold),
+                pick(device, byType, AlertThreshold::getWindowThreshold, defaultWindowThreshold),
+                pick(device, byType, AlertThreshold::getRateThreshold, defaultRateThreshold));
+    }
+
+    private static double pick(AlertThreshold device, AlertThreshold byType,
+                               Function<AlertThreshold, Double> threshold, double fallback) {
+        Double value = device != null ? threshold.apply(device) : null;
+        if (value == null && byType != null) {
+            value = threshold.apply(byType);
+        }
+        return value != null ? value : fallback;
+    }
+
+    private void publish(UUID deviceId, LocalDateTime timestamp, Transition transition) {
+        if (transition.state() == AlertState.ALERTING) {
+            LOGGER.warn("Device {} exceeded its {} consumption threshold: {} > {}",
+                    deviceId, transition.rule(), transition.value(), transition.threshold());
+        } else if (transition.state() == AlertState.COOLDOWN) {
+            LOGGER.info("Device {} is back under its consumption thresholds", deviceId);
+        } else {
+            LOGGER.info("Device {} finished its alert cooldown", deviceId);
+        }
+
+        try {
+            // Not user-specific, since a device can have multiple owners
+            OverconsumptionNotificationMessage notification = new OverconsumptionNotificationMessage();
+            notification.setDeviceId(deviceId);
+            notification.setUserId(null);
+            notification.setDeviceName(deviceRegistry.getName(deviceId));
+            notification.setCurrentConsumption(transition.value());
+            notification.setThreshold(transition.threshold());
+            notification.setTimestamp(timestamp);
+            notification.setState(transition.state().name());
+            notification.setRule(transition.rule());
+
+            rabbitTemplate.convertAndSend(
+                    RabbitMQConfig.OVERCONSUMPTION_NOTIFICATIONS_EXCHANGE,
+                    RabbitMQConfig.OVERCONSUMPTION_NOTIFICATION_ROUTING_KEY,
+                    notification);
+
+            // Also send via WebSocket
+            if (messagingTemplate != null) {
+                messagingTemplate.convertAndSend("/exchange/amq.topic/notifications.device." + deviceId, notification);
+            }
+
+            LOGGER.info("Published {} notification for device {}", transition.state(), deviceId);
+        } catch (Exception e) {
+            LOGGER.error("Failed to send overconsumption notification for device {}: {}", deviceId, e.getMessage(), e);
+        }
+    }
+
+    private record Thresholds(double hourly, double window, double rate) {
+    }
+
+    /**
+     * State entered, with the rule that decided it and its value and threshold.
+     */
+    private record Transition(AlertState state, String rule, double value, double threshold) {
+    }
+
+    /**
+     * Alert state of one device, with the measurements of the sliding window in a ring buffer.
+     */
+    private final class DeviceAlert {
+        private AlertState state = AlertState.OK;
+        private long stateSinceSeconds;
+        private long lastUpdateNanos = System.nanoTime();
+        // Set under the lock once removed from the map; an update that finds it set looks the alert up again
+        private boolean evicted;
+        // Rule, value and threshold of the last breach, reported when it clears
+        private Transition lastBreach;
+
+        private long[] windowSeconds = new long[16];
+        private double[] windowValues = new double[16];
+        private int windowHead;
+        private int windowSize;
+        private double windowSum;
+        private long windowEndSeconds = Long.MIN_VALUE;
+
+        private boolean hasPrevious;
+        private long previousSeconds;
+        private double previousValue;
+
+        synchronized AlertState state() {
+            return state;
+        }
+
+        synchronized Transition update(LocalDateTime timestamp, double value, double hourlyTotal, Thresholds thresholds) {
+            long seconds = timestamp.toEpochSecond(ZoneOffset.UTC);
+            lastUpdateNanos = System.nanoTime();
+            if (thresholds.window() > 0) {
+                addToWindow(seconds, value);
+            }
+            double rate = Double.NaN;
+            if (hasPrevious && seconds > previousSeconds) {
+                rate = (value - previousValue) * 60.0 / (seconds - previousSeconds);
+            }
+            if (!hasPrevious || seconds >= previousSeconds) {
+                hasPrevious = true;
+                previousSeconds = seconds;
+                previousValue = value;
+            }
+
+            switch (state) {
+                case OK -> {
+                    Transition breach = breach(hourlyTotal, rate, thresholds, 1.0);
+                    if (breach != null) {
+                        return enter(AlertState.ALERTING, seconds, breach);
+                    }
+                }
+                case ALERTING -> {
+                    Transition breach = breach(hourlyTotal, rate, thresholds, clearRatio);
+                    if (breach != null) {
+                        lastBreach = breach;
+                    } else {
+                        return enter(AlertState.COOLDOWN, seconds, lastBreach);
+                    }
+                }
+                case COOLDOWN -> {
+                    if (seconds - stateSinceSeconds >= cooldownMinutes * 60) {
+                        Transition breach = breach(hourlyTotal, rate, thresholds, 1.0);
+                        return breach != null
+                                ? enter(AlertState.ALERTING, seconds, breach)
+                                : enter(AlertState.OK, seconds, lastBreach);
+                    }
+                }
+            }
+            return null;
+        }
+
+        synchronized boolean evictIfIdle(long okIdleSince, long activeIdleSince) {
+            long idleSince = state == AlertState.OK ? okIdleSince : activeIdleSince;
+            if (lastUpdateNanos - idleSince < 0) {
+                evicted = true;
+            }
+            return evicted;
+        }
+
+        private Transition enter(AlertState next, long seconds, Transition cause) {
+            state = next;
+            stateSinceSeconds = seconds;
+            lastBreach = cause;
+            return new Transition(next, cause.rule(), cause.value(), cause.threshold());
+        }
+
+        /**
+         * First rule whose value is above factor times its threshold, or null.
+         */
+        private Transition breach(double hourlyTotal, double rate, Thresholds thresholds, double factor) {
+            if (thresholds.hourly() > 0 && hourlyTotal > thresholds.hourly() * factor) {
+                return new Transition(AlertState.ALERTING, "hourly", hourlyTotal, thresholds.hourly());
+            }
+            if (thresholds.window() > 0 && windowSum > thresholds.window() * factor) {
+                return new Transition(AlertState.ALERTING, "window", windowSum, thresholds.window());
+            }
+            if (thresholds.rate() > 0 && rate > thresholds.rate() * factor) {
+                return new Transition(AlertState.ALERTING, "rate", rate, thresholds.rate());
+            }
+            return null;
+        }
+
+        /**
+         * Adds a measurement and drops those older than the window before the latest one.
+         */
+        private void addToWindow(long seconds, double value) {
+            if (windowSize == windowValues.length) {
+                long[] grownSeconds = new long[windowSize * 2];
+                double[] grownValues = new double[windowSize * 2];
+                for (int i = 0; i < windowSize; i++) {
+                    grownSeconds[i] = windowSeconds[(windowHead + i) % windowSize];
+                    grownValues[i] = windowValues[(windowHead + i) % windowSize];
+                }
+                windowSeconds = grownSeconds;
+                windowValues = grownValues;
+                windowHead = 0;
+            }
+            int tail = (windowHead + windowSize) % windowValues.length;
+            windowSeconds[tail] = seconds;
+            windowValues[tail] = value;
+            windowSize++;
+            windowSum += value;
+
+            // A late measurement does not move the window back
+            windowEndSeconds = Math.max(windowEndSeconds, seconds);
+            long cutoff = windowEndSeconds - windowMinutes * 60;
+            while (windowSize > 0 && windowSeconds[windowHead] <= cutoff) {
+                windowSum -= windowValues[windowHead];
+                windowHead = (windowHead + 1) % windowValues.length;
+                windowSize--;
+            }
+            if (windowSize == 0) {
+                // Avoid drift from repeated subtraction
+                windowSum = 0;
+            }
+        }
+    }
+}
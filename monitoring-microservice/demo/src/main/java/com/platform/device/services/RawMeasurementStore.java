@@ -0,0 +1,324 @@
+package com.platform.device.services;
+
+import com.platform.device.dtos.RawSeriesDTO;
+import com.platform.device.dtos.RawSeriesPointDTO;
+import com.platform.device.entities.RawMeasurementBlock;
+import com.platform.device.repositories.RawMeasurementBlockRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional store of every raw measurement, next to the hourly sums.
+ * <p>
+ * Measurements are appended to an in-memory {@link GorillaCodec} block per (device, day). A
+ * block stays open until it holds block-points measurements, gets older than max-block-age-ms
+ * or its day is over, and is then written as a row of raw_measurement_block, so replicas never
+ * update each other's rows. Once a day is closed its blocks are merged into one, sorted by
+ * time, which also compresses best. Compaction keeps going while there is a backlog of days
+ * to merge, up to compaction-max-run-ms per run.
+ */
+@Service
+public class RawMeasurementStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RawMeasurementStore.class);
+
+    // Namespace of the per-day advisory locks taken by compaction
+    private static final int COMPACTION_LOCK_NAMESPACE = 0x726177;
+    private static final int COMPACTION_BATCH_SIZE = 100;
+
+    @Autowired
+    private RawMeasurementBlockRepository rawMeasurementBlockRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${energy.consumption.raw-store.enabled:false}")
+    private boolean enabled;
+
+    // Blocks kept in memory for retry while the database is unavailable
+    @Value("${energy.consumption.raw-store.max-unsaved-blocks:10000}")
+    private int maxUnsavedBlocks;
+
+    // An open block is written once it holds this many measurements or gets this old
+    @Value("${energy.consumption.raw-store.block-points:1024}")
+    private int blockPoints;
+
+    @Value("${energy.consumption.raw-store.max-block-age-ms:3600000}")
+    private long maxBlockAgeMs;
+
+    @Value("${energy.consumption.raw-store.compaction-max-run-ms:300000}")
+    private long compactionMaxRunMs;
+
+    private final ConcurrentHashMap<BlockKey, OpenBlock> openBlocks = new ConcurrentHashMap<>();
+    private final Deque<RawMeasurementBlock> unsavedBlocks = new ConcurrentLinkedDeque<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void append(UUID deviceId, LocalDateTime timestamp, double value) {
+        if (!enabled) {
+            return;
+        }
+        long timestampMillis = toEpochMillis(timestamp);
+        // Appending inside compute keeps it atomic with the removal of the block by a flush
+        openBlocks.compute(new BlockKey(deviceId, timestamp.toLocalDate()), (key, block) -> {
+            OpenBlock target = block;
+            if (target != null && target.encoder.count() >= blockPoints) {
+                // Full, written by the next flush
+                unsavedBlocks.addLast(toBlock(key, target.encoder));
+                target = null;
+            }
+            if (target == null) {
+                target = new OpenBlock();
+            }
+            target.encoder.append(timestampMillis, value);
+            return target;
+        });
+    }
+
+    /**
+     * Writes the full blocks, the open blocks that are too old or of a past day, and the blocks
+     * a previous flush could not write.
+     */
+    @Scheduled(fixedDelayString = "${energy.consumption.raw-store.flush-interval-ms:60000}")
+    public void flush() {
+        if (enabled && flushLock.tryLock()) {
+            try {
+                flushBlocks(false);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            flushBlocks(true);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushBlocks(boolean all) {
+        try {
+            LocalDate today = LocalDate.now();
+            long openedBefore = System.nanoTime() - maxBlockAgeMs * 1_000_000L;
+            for (BlockKey key : openBlocks.keySet()) {
+                // Removed inside compute, so no measurement is appended to a block being written
+                openBlocks.computeIfPresent(key, (k, block) -> {
+                    boolean close = all || k.date().isBefore(today) || block.openedNanos - openedBefore < 0;
+                    if (!close) {
+                        return block;
+                    }
+                    unsavedBlocks.addLast(toBlock(k, block.encoder));
+                    return null;
+                });
+            }
+            while (unsavedBlocks.size() > maxUnsavedBlocks) {
+                RawMeasurementBlock dropped = unsavedBlocks.pollFirst();
+                LOGGER.error("Dropping {} raw measurements of device {} on {}: too many unsaved blocks",
+                        dropped.getPointCount(), dropped.getDeviceId(), dropped.getBlockDate());
+            }
+            if (unsavedBlocks.isEmpty()) {
+                return;
+            }
+
+            List<RawMeasurementBlock> batch = new ArrayList<>(unsavedBlocks);
+            transactionTemplate.executeWithoutResult(status -> rawMeasurementBlockRepository.saveAll(batch));
+            unsavedBlocks.removeAll(batch);
+            LOGGER.debug("Flushed {} raw measurement blocks", batch.size());
+        } catch (Exception e) {
+            // Failed entities may have been given an id already, reset them for the retry
+            unsavedBlocks.forEach(block -> block.setId(null));
+            LOGGER.error("Failed to flush raw measurement blocks, retrying on the next flush: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Merges the blocks of each closed day into a single block, a batch of days at a time until
+     * none is left or compaction-max-run-ms is spent.
+     */
+    @Scheduled(fixedDelayString = "${energy.consumption.raw-store.compaction-interval-ms:3600000}",
+            initialDelayString = "${energy.consumption.raw-store.compaction-interval-ms:3600000}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.nanoTime() + compactionMaxRunMs * 1_000_000L;
+        int compacted = 0;
+        try {
+            while (System.nanoTime() - deadline < 0) {
+                List<Object[]> candidates = rawMeasurementBlockRepository.findCompactionCandidates(
+                        LocalDate.now(), PageRequest.ofSize(COMPACTION_BATCH_SIZE));
+                int progress = 0;
+                for (Object[] candidate : candidates) {
+                    UUID deviceId = (UUID) candidate[0];
+                    LocalDate date = (LocalDate) candidate[1];
+                    if (Boolean.TRUE.equals(transactionTemplate.execute(status -> compactDay(deviceId, date)))) {
+                        progress++;
+                    }
+                }
+                compacted += progress;
+                // A short page is the last one; a page of days locked by other replicas would come back unchanged
+                if (candidates.size() < COMPACTION_BATCH_SIZE || progress == 0) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Raw measurement compaction failed: {}", e.getMessage(), e);
+        }
+        if (compacted > 0) {
+            LOGGER.info("Compacted the raw measurements of {} device days", compacted);
+        }
+    }
+
+    /**
+     * Returns whether the day was compacted; false if another replica holds it.
+     */
+    private boolean compactDay(UUID deviceId, LocalDate date) {
+        if (!rawMeasurementBlockRepository.tryLock(COMPACTION_LOCK_NAMESPACE, new BlockKey(deviceId, date).hashCode())) {
+            return false;
+        }
+        List<RawMeasurementBlock> blocks = rawMeasurementBlockRepository.findByDeviceIdAndBlockDate(deviceId, date);
+        if (blocks.size() < 2) {
+            return true;
+        }
+
+        int total = blocks.stream().mapToInt(RawMeasurementBlock::getPointCount).sum();
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int[] size = {0};
+        for (RawMeasurementBlock block : blocks) {
+            GorillaCodec.decode(block.getEncoded(), block.getPointCount(), (timestampMillis, value) -> {
+                timestamps[size[0]] = timestampMillis;
+                values[size[0]] = value;
+                size[0]++;
+            });
+        }
+
+        Integer[] order = new Integer[total];
+        Arrays.setAll(order, i -> i);
+        // Stable, so measurements with the same timestamp keep their arrival order
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+        GorillaCodec.Encoder encoder = new GorillaCodec.Encoder();
+        for (int i : order) {
+            encoder.append(timestamps[i], values[i]);
+        }
+
+        // Only the blocks read here are replaced, blocks flushed meanwhile stay for the next run
+        rawMeasurementBlockRepository.deleteAll(blocks);
+        rawMeasurementBlockRepository.save(toBlock(new BlockKey(deviceId, date), encoder));
+        LOGGER.debug("Compacted {} raw measurement blocks of device {} on {}", blocks.size(), deviceId, date);
+        return true;
+    }
+
+    /**
+     * Raw measurements of a device between start and end, inclusive, downsampled to at most
+     * maxPoints equal-width buckets with the min, max and average of each. Measurements not
+     * flushed yet are included.
+     */
+    public RawSeriesDTO getSeries(UUID deviceId, LocalDateTime start, LocalDateTime end, int maxPoints) {
+        long startMillis = toEpochMillis(start);
+        long endMillis = toEpochMillis(end);
+        long bucketMillis = Math.max(1, Math.ceilDiv(endMillis - startMillis + 1, maxPoints));
+        int bucketCount = (int) Math.ceilDiv(endMillis - startMillis + 1, bucketMillis);
+
+        double[] min = new double[bucketCount];
+        double[] max = new double[bucketCount];
+        double[] sum = new double[bucketCount];
+        int[] count = new int[bucketCount];
+        GorillaCodec.PointConsumer collector = (timestampMillis, value) -> {
+            if (timestampMillis < startMillis || timestampMillis > endMillis) {
+                return;
+            }
+            int bucket = (int) ((timestampMillis - startMillis) / bucketMillis);
+            if (count[bucket] == 0) {
+                min[bucket] = value;
+                max[bucket] = value;
+            } else {
+                min[bucket] = Math.min(min[bucket], value);
+                max[bucket] = Math.max(max[bucket], value);
+            }
+            sum[bucket] += value;
+            count[bucket]++;
+        };
+
+        LocalDate startDate = start.toLocalDate();
+        LocalDate endDate = end.toLocalDate();
+        for (RawMeasurementBlock block : rawMeasurementBlockRepository.findByDeviceIdAndBlockDateBetween(deviceId, startDate, endDate)) {
+            GorillaCodec.decode(block.getEncoded(), block.getPointCount(), collector);
+        }
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            // Copy the open block under the map lock, decoding happens outside it
+            RawMeasurementBlock[] open = new RawMeasurementBlock[1];
+            BlockKey key = new BlockKey(deviceId, date);
+            openBlocks.computeIfPresent(key, (k, block) -> {
+                open[0] = toBlock(k, block.encoder);
+                return block;
+            });
+            if (open[0] != null) {
+                GorillaCodec.decode(open[0].getEncoded(), open[0].getPointCount(), collector);
+            }
+        }
+
+        List<RawSeriesPointDTO> points = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            if (count[i] > 0) {
+                points.add(new RawSeriesPointDTO(toLocalDateTime(startMillis + i * bucketMillis),
+                        min[i], max[i], sum[i] / count[i], count[i]));
+            }
+        }
+        return new RawSeriesDTO(deviceId, start, end, bucketMillis, points);
+    }
+
+    private static RawMeasurementBlock toBlock(BlockKey key, GorillaCodec.Encoder encoder) {
+        return new RawMeasurementBlock(null, key.deviceId(), key.date(),
+                toLocalDateTime(encoder.minTimestamp()), toLocalDateTime(encoder.maxTimestamp()),
+                encoder.count(), encoder.toByteArray());
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    private record BlockKey(UUID deviceId, LocalDate date) {
+    }
+
+    /**
+     * Encoder of a block that is still being appended to, only touched inside map operations.
+     */
+    private static final class OpenBlock {
+        private final GorillaCodec.Encoder encoder = new GorillaCodec.Encoder();
+        private final long openedNanos = System.nanoTime();
+    }
+}
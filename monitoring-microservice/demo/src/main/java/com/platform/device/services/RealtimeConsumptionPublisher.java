@@ -0,0 +1,125 @@
+package com.platform.device.services;
+
+import com.platform.device.dtos.RealtimeConsumptionDTO;
+import com.platform.device.messaging.RealtimeConsumptionWireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces realtime consumption updates: only the latest update of each device is kept and
+ * sent on the next flush, so a device is published at most once per interval (4 times per
+ * second by default) however fast its measurements arrive. Devices nobody is watching are
+ * not published at all. An interval of 0 publishes every update immediately.
+ * <p>
+ * Each update is sent as JSON and, to clients subscribed to the binary destination, as a
+ * {@link RealtimeConsumptionWireFormat} frame; a format is only encoded if it has subscribers.
+ */
+@Service
+public class RealtimeConsumptionPublisher implements SchedulingConfigurer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeConsumptionPublisher.class);
+
+    static final String DESTINATION_PREFIX = ConsumptionSubscriptionRegistry.DESTINATION_PREFIX
+            + ConsumptionSubscriptionRegistry.ROUTING_KEY_PREFIX;
+    static final String BINARY_DESTINATION_PREFIX = ConsumptionSubscriptionRegistry.DESTINATION_PREFIX
+            + ConsumptionSubscriptionRegistry.BINARY_ROUTING_KEY_PREFIX;
+    private static final MimeType BINARY_CONTENT_TYPE = MimeType.valueOf(RealtimeConsumptionWireFormat.CONTENT_TYPE);
+
+    @Autowired(required = false)
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ConsumptionSubscriptionRegistry subscriptionRegistry;
+
+    @Value("${realtime.publish-interval-ms:250}")
+    private long publishIntervalMs;
+
+    private final ConcurrentHashMap<UUID, RealtimeConsumptionDTO> pending = new ConcurrentHashMap<>();
+
+    public void offer(UUID deviceId, LocalDateTime timestamp, Double consumption,
+                      LocalDateTime hourTimestamp, Double hourlyTotal) {
+        if (messagingTemplate == null || !hasSubscribers(deviceId)) {
+            return;
+        }
+        if (publishIntervalMs <= 0) {
+            send(new RealtimeConsumptionDTO(deviceId, timestamp, consumption, hourTimestamp, hourlyTotal));
+            return;
+        }
+        // The pending update is replaced in place; a flush removes it from the map before sending it
+        pending.compute(deviceId, (id, update) -> {
+            if (update == null) {
+                return new RealtimeConsumptionDTO(id, timestamp, consumption, hourTimestamp, hourlyTotal);
+            }
+            if (!timestamp.isBefore(update.getTimestamp())) {
+                update.setTimestamp(timestamp);
+                update.setConsumption(consumption);
+                update.setHourTimestamp(hourTimestamp);
+                update.setHourlyTotal(hourlyTotal);
+            }
+            return update;
+        });
+    }
+
+    /**
+     * Schedules the flush only when updates are coalesced; a fixed rate of 0 is invalid.
+     */
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        if (publishIntervalMs > 0) {
+            registrar.addFixedRateTask(this::flush, Duration.ofMillis(publishIntervalMs));
+        }
+    }
+
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int sent = 0;
+        for (UUID deviceId : pending.keySet()) {
+            RealtimeConsumptionDTO update = pending.remove(deviceId);
+            // Viewers may have left since the update was queued
+            if (update != null && hasSubscribers(deviceId)) {
+                send(update);
+                sent++;
+            }
+        }
+        LOGGER.debug("Published {} coalesced real-time consumption updates", sent);
+    }
+
+    private boolean hasSubscribers(UUID deviceId) {
+        return subscriptionRegistry.hasJsonSubscribers(deviceId) || subscriptionRegistry.hasBinarySubscribers(deviceId);
+    }
+
+    private void send(RealtimeConsumptionDTO update) {
+        try {
+            if (subscriptionRegistry.hasJsonSubscribers(update.getDeviceId())) {
+                messagingTemplate.convertAndSend(DESTINATION_PREFIX + update.getDeviceId(), update);
+            }
+            if (subscriptionRegistry.hasBinarySubscribers(update.getDeviceId())) {
+                // Sent as is, the JSON converter would turn the bytes into a base64 string
+                SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                headers.setContentType(BINARY_CONTENT_TYPE);
+                headers.setLeaveMutable(true);
+                messagingTemplate.send(BINARY_DESTINATION_PREFIX + update.getDeviceId(), MessageBuilder.createMessage(
+                        RealtimeConsumptionWireFormat.encode(update), headers.getMessageHeaders()));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Failed to publish real-time consumption update for device {}: {}",
+                    update.getDeviceId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.platform.device.services;
+
+import com.platform.device.messaging.RealtimeSubscriptionsMessage;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class RealtimeSubscriptionsListener {
+
+    @Autowired
+    private ConsumptionSubscriptionRegistry consumptionSubscriptionRegistry;
+
+    /**
+     * Every replica receives every snapshot, including its own.
+     */
+    @RabbitListener(queues = "#{rabbitMQConfig.realtimeSubscriptionsQueue().name}")
+    public void handleRealtimeSubscriptions(RealtimeSubscriptionsMessage message) {
+        if (message.getReplicaId() != null && message.getRoutingKeys() != null) {
+            consumptionSubscriptionRegistry.onRemoteSnapshot(message.getReplicaId(), message.getRoutingKeys());
+        }
+    }
+}
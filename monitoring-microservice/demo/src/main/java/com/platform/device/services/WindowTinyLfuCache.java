@@ -0,0 +1,237 @@
+package com.platform.device.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Weight-bounded cache with W-TinyLFU eviction.
+ * <p>
+ * New entries land in a small LRU window (1% of the weight). Entries pushed out of the window
+ * only enter the main space if a frequency sketch says they are used more often than the
+ * entries they would evict, so a burst of one-off lookups cannot flush the popular entries.
+ * The main space is a segmented LRU: entries hit again while on probation move to the
+ * protected segment (80% of the main weight).
+ * <p>
+ * All operations take one lock; they only touch a few map entries and sketch counters.
+ */
+final class WindowTinyLfuCache<K, V> {
+    private final ToIntFunction<V> weigher;
+    private final long windowMaxWeight;
+    private final long mainMaxWeight;
+    private final long protectedMaxWeight;
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    WindowTinyLfuCache(long maxWeight, int expectedEntries, ToIntFunction<V> weigher) {
+        this.weigher = weigher;
+        this.windowMaxWeight = Math.max(1, maxWeight / 100);
+        this.mainMaxWeight = Math.max(1, maxWeight - windowMaxWeight);
+        this.protectedMaxWeight = mainMaxWeight * 8 / 10;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    V get(K key) {
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node<V> node = window.get(key);
+            if (node != null) {
+                return node.value();
+            }
+
+            node = probation.remove(key);
+            if (node != null) {
+                probationWeight -= node.weight();
+                protectedSegment.put(key, node);
+                protectedWeight += node.weight();
+                demoteProtected();
+                return node.value();
+            }
+
+            node = protectedSegment.get(key);
+            return node != null ? node.value() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(K key, V value) {
+        Node<V> node = new Node<>(value, weigher.applyAsInt(value));
+        lock.lock();
+        try {
+            removeLocked(key);
+            if (node.weight() > mainMaxWeight) {
+                return;
+            }
+            sketch.increment(key);
+            window.put(key, node);
+            windowWeight += node.weight();
+
+            while (windowWeight > windowMaxWeight && !window.isEmpty()) {
+                Map.Entry<K, Node<V>> candidate = pollEldest(window);
+                windowWeight -= candidate.getValue().weight();
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void invalidate(K key) {
+        lock.lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long weightedSize() {
+        lock.lock();
+        try {
+            return windowWeight + probationWeight + protectedWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves a window victim into probation if it is used more often than each main entry it
+     * displaces; otherwise it is dropped.
+     */
+    private void admit(K key, Node<V> candidate) {
+        int candidateFrequency = sketch.frequency(key);
+        while (probationWeight + protectedWeight + candidate.weight() > mainMaxWeight) {
+            LinkedHashMap<K, Node<V>> segment = probation.isEmpty() ? protectedSegment : probation;
+            Map.Entry<K, Node<V>> victim = segment.entrySet().iterator().next();
+            if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return;
+            }
+            segment.remove(victim.getKey());
+            if (segment == probation) {
+                probationWeight -= victim.getValue().weight();
+            } else {
+                protectedWeight -= victim.getValue().weight();
+            }
+        }
+        probation.put(key, candidate);
+        probationWeight += candidate.weight();
+    }
+
+    private void demoteProtected() {
+        while (protectedWeight > protectedMaxWeight && !protectedSegment.isEmpty()) {
+            Map.Entry<K, Node<V>> demoted = pollEldest(protectedSegment);
+            protectedWeight -= demoted.getValue().weight();
+            probation.put(demoted.getKey(), demoted.getValue());
+            probationWeight += demoted.getValue().weight();
+        }
+    }
+
+    private void removeLocked(K key) {
+        Node<V> node = window.remove(key);
+        if (node != null) {
+            windowWeight -= node.weight();
+            return;
+        }
+        node = probation.remove(key);
+        if (node != null) {
+            probationWeight -= node.weight();
+            return;
+        }
+        node = protectedSegment.remove(key);
+        if (node != null) {
+            protectedWeight -= node.weight();
+        }
+    }
+
+    private static <K, V> Map.Entry<K, Node<V>> pollEldest(LinkedHashMap<K, Node<V>> segment) {
+        Iterator<Map.Entry<K, Node<V>>> iterator = segment.entrySet().iterator();
+        Map.Entry<K, Node<V>> eldest = iterator.next();
+        // Copy before removing, the entry itself is reused by the map
+        Map.Entry<K, Node<V>> copy = Map.entry(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return copy;
+    }
+
+    private record Node<V>(V value, int weight) {
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters (capped at 15) over four rows. All counters are
+     * halved once the number of increments reaches ten times the width, so old popularity
+     * fades out.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final long[] SEEDS = {
+                0x97cb3127L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0x85ebca77c2b2ae63L};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(64, expectedEntries) - 1) << 1;
+            this.counters = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, counters[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        /**
+         * Conservative update: only the counters at the current minimum are raised.
+         */
+        void increment(Object key) {
+            int hash = key.hashCode();
+            int min = frequency(key);
+            if (min >= MAX_COUNT) {
+                return;
+            }
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] == min) {
+                    counters[row][index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h ^= h >>> 32;
+            return (int) h & mask;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.platform.device.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MeasurementBatchTest {
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        MeasurementBatch batch = new MeasurementBatch(0);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            batch.add(i, -i, MeasurementWireFormat.toEpochMicros(start.plusMinutes(i)), i / 4.0);
+        }
+
+        assertEquals(100, batch.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new UUID(i, -i), batch.deviceId(i));
+            assertEquals(i, batch.deviceIdMostSignificantBits(i));
+            assertEquals(-i, batch.deviceIdLeastSignificantBits(i));
+            assertEquals(start.plusMinutes(i), batch.timestamp(i));
+            assertEquals(i / 4.0, batch.value(i));
+        }
+    }
+
+    @Test
+    void startsEmpty() {
+        assertEquals(0, new MeasurementBatch(16).size());
+    }
+}
@@ -0,0 +1,87 @@
+package com.platform.device.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeasurementWireFormatTest {
+
+    @Test
+    void readsFieldsAtAnOffset() {
+        UUID deviceId = UUID.randomUUID();
+        LocalDateTime timestamp = LocalDateTime.of(2024, 6, 30, 23, 59, 59, 999_999_000);
+        ByteBuffer body = ByteBuffer.allocate(2 * MeasurementWireFormat.RECORD_SIZE)
+                .put(new byte[MeasurementWireFormat.RECORD_SIZE])
+                .putLong(deviceId.getMostSignificantBits())
+                .putLong(deviceId.getLeastSignificantBits())
+                .putLong(MeasurementWireFormat.toEpochMicros(timestamp))
+                .putDouble(-12.75);
+        int offset = MeasurementWireFormat.RECORD_SIZE;
+
+        assertEquals(deviceId.getMostSignificantBits(), MeasurementWireFormat.deviceIdMostSignificantBits(body.array(), offset));
+        assertEquals(deviceId.getLeastSignificantBits(), MeasurementWireFormat.deviceIdLeastSignificantBits(body.array(), offset));
+        assertEquals(timestamp, MeasurementWireFormat.toLocalDateTime(MeasurementWireFormat.epochMicros(body.array(), offset)));
+        assertEquals(-12.75, MeasurementWireFormat.value(body.array(), offset));
+    }
+
+    @Test
+    void encodesTheRestOfABatchAsAnEnvelope() {
+        MeasurementBatch batch = new MeasurementBatch(3);
+        for (int i = 0; i < 3; i++) {
+            batch.add(i, -i, 1_000_000L * i, i + 0.25);
+        }
+
+        byte[] body = MeasurementWireFormat.encode(batch, 1);
+
+        assertEquals(2 * MeasurementWireFormat.RECORD_SIZE, body.length);
+        for (int i = 1; i < 3; i++) {
+            int offset = (i - 1) * MeasurementWireFormat.RECORD_SIZE;
+            assertEquals(i, MeasurementWireFormat.deviceIdMostSignificantBits(body, offset));
+            assertEquals(-i, MeasurementWireFormat.deviceIdLeastSignificantBits(body, offset));
+            assertEquals(1_000_000L * i, MeasurementWireFormat.epochMicros(body, offset));
+            assertEquals(i + 0.25, MeasurementWireFormat.value(body, offset));
+        }
+    }
+
+    @Test
+    void convertsTimestampsToMicrosAndBack() {
+        LocalDateTime epoch = LocalDateTime.of(1970, 1, 1, 0, 0);
+        assertEquals(0, MeasurementWireFormat.toEpochMicros(epoch));
+        assertEquals(1_500_000, MeasurementWireFormat.toEpochMicros(epoch.plusNanos(1_500_000_000)));
+
+        for (LocalDateTime timestamp : new LocalDateTime[]{
+                epoch,
+                LocalDateTime.of(2024, 2, 29, 12, 30, 15, 250_000),
+                // Before the epoch the micros are negative and must floor, not truncate
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000),
+                LocalDateTime.of(1900, 1, 1, 0, 0, 0, 1_000)}) {
+            assertEquals(timestamp, MeasurementWireFormat.toLocalDateTime(MeasurementWireFormat.toEpochMicros(timestamp)));
+        }
+        assertEquals(-1, MeasurementWireFormat.toEpochMicros(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000)));
+    }
+
+    @Test
+    void dropsSubMicrosecondPrecision() {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 0, 0, 0, 123_456_789);
+
+        assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0, 0, 123_456_000),
+                MeasurementWireFormat.toLocalDateTime(MeasurementWireFormat.toEpochMicros(timestamp)));
+    }
+
+    @Test
+    void recognizesContentTypesWithParameters() {
+        assertTrue(MeasurementWireFormat.isBinary(MeasurementWireFormat.CONTENT_TYPE));
+        assertTrue(MeasurementWireFormat.isBinary(MeasurementWireFormat.CONTENT_TYPE + "; version=1"));
+        assertTrue(MeasurementWireFormat.isBatch(" " + MeasurementWireFormat.BATCH_CONTENT_TYPE + ";charset=binary"));
+        assertFalse(MeasurementWireFormat.isBinary(MeasurementWireFormat.BATCH_CONTENT_TYPE));
+        assertFalse(MeasurementWireFormat.isBatch(MeasurementWireFormat.CONTENT_TYPE));
+        assertFalse(MeasurementWireFormat.isBinary("application/json"));
+        assertFalse(MeasurementWireFormat.isBatch(null));
+    }
+}
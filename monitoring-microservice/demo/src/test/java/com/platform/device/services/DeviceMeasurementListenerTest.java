@@ -0,0 +1,122 @@
+package com.platform.device.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.platform.device.messaging.MeasurementWireFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DeviceMeasurementListenerTest {
+
+    private static final String QUEUE = "monitoring.measurements.1";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 4, 1, 8, 0);
+    private static final UUID DEVICE = UUID.randomUUID();
+
+    @Mock
+    private HourlyEnergyConsumptionService hourlyEnergyConsumptionService;
+
+    @Mock
+    private DeviceRegistry deviceRegistry;
+
+    @Mock
+    private IngestLog ingestLog;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @InjectMocks
+    private DeviceMeasurementListener listener;
+
+    @BeforeEach
+    void setUp() {
+        when(deviceRegistry.isKnown(anyLong(), anyLong())).thenReturn(true);
+    }
+
+    @Test
+    void appliesEveryMeasurement() throws Exception {
+        listener.handleDeviceMeasurements(List.of(envelope(1.0, 2.0, 3.0)));
+
+        verify(hourlyEnergyConsumptionService, times(3)).processMeasurement(eq(DEVICE), any(), any());
+        verify(rabbitTemplate, never()).send(any(String.class), any(String.class), any(Message.class));
+    }
+
+    @Test
+    void rejectsTheWholeBatchWhenTheDatabaseReadsFail() {
+        doThrow(new IllegalStateException("database down"))
+                .when(hourlyEnergyConsumptionService).prepareMeasurement(eq(DEVICE), eq(START.plusMinutes(2)));
+
+        assertThrows(IllegalStateException.class,
+                () -> listener.handleDeviceMeasurements(List.of(envelope(1.0, 2.0, 3.0))));
+
+        verify(hourlyEnergyConsumptionService, never()).processMeasurement(any(), any(), any());
+    }
+
+    @Test
+    void publishesBackOnlyTheMeasurementsNotApplied() throws Exception {
+        doThrow(new IllegalStateException("buffer failure"))
+                .when(hourlyEnergyConsumptionService).processMeasurement(DEVICE, START.plusMinutes(1), 2.0);
+
+        listener.handleDeviceMeasurements(List.of(envelope(1.0, 2.0, 3.0)));
+
+        ArgumentCaptor<Message> requeued = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate).send(eq(""), eq(QUEUE), requeued.capture());
+        byte[] body = requeued.getValue().getBody();
+        assertEquals(MeasurementWireFormat.BATCH_CONTENT_TYPE, requeued.getValue().getMessageProperties().getContentType());
+        assertEquals(2 * MeasurementWireFormat.RECORD_SIZE, body.length);
+        assertEquals(2.0, MeasurementWireFormat.value(body, 0));
+        assertEquals(3.0, MeasurementWireFormat.value(body, MeasurementWireFormat.RECORD_SIZE));
+        verify(hourlyEnergyConsumptionService, never()).processMeasurement(DEVICE, START.plusMinutes(2), 3.0);
+    }
+
+    @Test
+    void skipsValuesThatAreNotFinite() throws Exception {
+        listener.handleDeviceMeasurements(List.of(envelope(Double.NaN, 2.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY)));
+
+        verify(hourlyEnergyConsumptionService).processMeasurement(DEVICE, START.plusMinutes(1), 2.0);
+        verify(hourlyEnergyConsumptionService, times(1)).processMeasurement(any(), any(), any());
+    }
+
+    private static Message envelope(double... values) {
+        ByteBuffer body = ByteBuffer.allocate(values.length * MeasurementWireFormat.RECORD_SIZE);
+        for (int i = 0; i < values.length; i++) {
+            body.putLong(DEVICE.getMostSignificantBits())
+                    .putLong(DEVICE.getLeastSignificantBits())
+                    .putLong(MeasurementWireFormat.toEpochMicros(START.plusMinutes(i)))
+                    .putDouble(values[i]);
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MeasurementWireFormat.BATCH_CONTENT_TYPE);
+        properties.setConsumerQueue(QUEUE);
+        return new Message(body.array(), properties);
+    }
+}
@@ -0,0 +1,110 @@
+package com.platform.device.services;
+
+import com.platform.device.entities.Device;
+import com.platform.device.repositories.DeviceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DeviceRegistryTest {
+
+    private static final UUID DEVICE = UUID.randomUUID();
+
+    @Mock
+    private DeviceRepository deviceRepository;
+
+    @InjectMocks
+    private DeviceRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "negativeTtlMs", 5000L);
+        ReflectionTestUtils.setField(registry, "negativeMaxEntries", 100);
+        ReflectionTestUtils.setField(registry, "tombstoneTtlMs", 60_000L);
+        when(deviceRepository.findAll()).thenReturn(List.of());
+        registry.load();
+    }
+
+    @Test
+    void picksUpDevicesFromTheDatabaseOnce() {
+        when(deviceRepository.findById(DEVICE)).thenReturn(Optional.of(device()));
+
+        assertTrue(registry.isKnown(DEVICE));
+        assertTrue(registry.isKnown(DEVICE));
+
+        verify(deviceRepository, times(1)).findById(DEVICE);
+        assertEquals("heater", registry.getType(DEVICE));
+    }
+
+    @Test
+    void remembersMissesForTheNegativeTtl() {
+        when(deviceRepository.findById(DEVICE)).thenReturn(Optional.empty());
+
+        assertFalse(registry.isKnown(DEVICE));
+        assertFalse(registry.isKnown(DEVICE));
+
+        verify(deviceRepository, times(1)).findById(DEVICE);
+    }
+
+    @Test
+    void deletedDeviceIsNotRegisteredAgainWhileItsRowStillExists() {
+        registry.register(DEVICE, "Heater", "heater");
+        when(deviceRepository.findById(DEVICE)).thenReturn(Optional.of(device()));
+
+        registry.unregister(DEVICE);
+
+        assertFalse(registry.isKnown(DEVICE));
+        assertEquals(0, registry.size());
+        verify(deviceRepository, never()).findById(DEVICE);
+    }
+
+    @Test
+    void lookupRacingWithADeletionDoesNotRegisterTheDevice() {
+        when(deviceRepository.findById(DEVICE)).thenAnswer(invocation -> {
+            // The delete event arrives while the row is being read
+            registry.unregister(DEVICE);
+            return Optional.of(device());
+        });
+
+        assertFalse(registry.isKnown(DEVICE));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void registeringAgainClearsTheTombstone() {
+        registry.register(DEVICE, "Heater", "heater");
+        registry.unregister(DEVICE);
+
+        registry.register(DEVICE, "Heater", "heater");
+
+        assertTrue(registry.isKnown(DEVICE));
+    }
+
+    private static Device device() {
+        Device device = new Device();
+        device.setId(DEVICE);
+        device.setName("Heater");
+        device.setType("heater");
+        return device;
+    }
+}
@@ -0,0 +1,156 @@
+package com.platform.device.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GorillaCodecTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void roundTripsRegularSeries() {
+        long[] timestamps = new long[1000];
+        double[] values = new double[1000];
+        Random random = new Random(1);
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = START + i * 10_000L;
+            values[i] = i % 10 == 0 ? random.nextDouble() * 5 : values[Math.max(0, i - 1)];
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void roundTripsIrregularNoisySeries() {
+        long[] timestamps = new long[2000];
+        double[] values = new double[2000];
+        Random random = new Random(2);
+        long timestamp = START;
+        for (int i = 0; i < timestamps.length; i++) {
+            // Jitter from a millisecond up to minutes, to hit every delta-of-delta bucket
+            timestamp += switch (i % 5) {
+                case 0 -> 1 + random.nextInt(50);
+                case 1 -> 200 + random.nextInt(200);
+                case 2 -> 1500 + random.nextInt(1500);
+                case 3 -> 10_000;
+                default -> 60_000 + random.nextInt(600_000);
+            };
+            timestamps[i] = timestamp;
+            values[i] = random.nextGaussian() * 1000;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void roundTripsNegativeAndSpecialValues() {
+        double[] values = {
+                -1.5, 1.5, -0.0, 0.0, -1e-300, Double.MIN_VALUE, -Double.MAX_VALUE, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -42.0, -42.0, 3.0};
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = START + i * 1000L;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void roundTripsOutOfOrderTimestamps() {
+        long[] timestamps = {START, START + 5000, START + 1000, START + 1000, START - 60_000, START + 86_000_000L, START};
+        double[] values = {1, 2, 3, 4, 5, 6, 7};
+
+        assertRoundTrip(timestamps, values);
+
+        GorillaCodec.Encoder encoder = encode(timestamps, values);
+        assertEquals(START - 60_000, encoder.minTimestamp());
+        assertEquals(START + 86_000_000L, encoder.maxTimestamp());
+    }
+
+    @Test
+    void roundTripsXorsWithAllSixtyFourBitsSignificant() {
+        // Sign bit and lowest mantissa bit both flip, so the XOR has no leading or trailing zeros
+        double[] values = {
+                0.0,
+                Double.longBitsToDouble(0x8000000000000001L),
+                0.0,
+                Double.longBitsToDouble(0xffffffffffffffffL),
+                Double.longBitsToDouble(0x7ffffffffffffffeL),
+                1.0};
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = START + i;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void roundTripsXorsWithMoreThanThirtyOneLeadingZeros() {
+        // Only the low mantissa bits change; the leading count is capped to fit its 5-bit field
+        double[] values = {
+                Double.longBitsToDouble(1L), Double.longBitsToDouble(3L), Double.longBitsToDouble(2L),
+                Double.longBitsToDouble(0x0000000100000000L), Double.longBitsToDouble(7L)};
+        long[] timestamps = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timestamps[i] = START + i * 1000L;
+        }
+
+        assertRoundTrip(timestamps, values);
+    }
+
+    @Test
+    void decodesOnlyTheRequestedPrefix() {
+        long[] timestamps = {START, START + 1000, START + 2000, START + 3000};
+        double[] values = {1, 2, 3, 4};
+        byte[] block = encode(timestamps, values).toByteArray();
+
+        List<Double> decoded = new ArrayList<>();
+        GorillaCodec.decode(block, 2, (timestamp, value) -> decoded.add(value));
+        assertEquals(List.of(1.0, 2.0), decoded);
+
+        decoded.clear();
+        GorillaCodec.decode(block, 0, (timestamp, value) -> decoded.add(value));
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    void unchangedPointsAtTheUsualIntervalTakeTwoBits() {
+        GorillaCodec.Encoder encoder = new GorillaCodec.Encoder();
+        for (int i = 0; i < 801; i++) {
+            encoder.append(START + i * 10_000L, 230.0);
+        }
+
+        // 16 bytes for the first point, then a delta of delta and a value bit per point
+        // (the second point spends 35 bits more, its first delta of 10 s takes the 32-bit bucket)
+        assertEquals(16 + (2 * 800 + 35 + 7) / 8, encoder.toByteArray().length);
+        assertEquals(801, encoder.count());
+    }
+
+    private static GorillaCodec.Encoder encode(long[] timestamps, double[] values) {
+        GorillaCodec.Encoder encoder = new GorillaCodec.Encoder();
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+        return encoder;
+    }
+
+    private static void assertRoundTrip(long[] timestamps, double[] values) {
+        GorillaCodec.Encoder encoder = encode(timestamps, values);
+        List<long[]> decoded = new ArrayList<>();
+        GorillaCodec.decode(encoder.toByteArray(), encoder.count(),
+                (timestamp, value) -> decoded.add(new long[]{timestamp, Double.doubleToRawLongBits(value)}));
+
+        assertEquals(timestamps.length, decoded.size());
+        for (int i = 0; i < timestamps.length; i++) {
+            assertEquals(timestamps[i], decoded.get(i)[0], "timestamp " + i);
+            assertEquals(Double.doubleToRawLongBits(values[i]), decoded.get(i)[1], "value " + i);
+        }
+    }
+}
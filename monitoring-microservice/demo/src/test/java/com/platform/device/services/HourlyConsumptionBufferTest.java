@@ -0,0 +1,89 @@
+package com.platform.device.services;
+
+import com.platform.device.entities.HourlyEnergyConsumption;
+import com.platform.device.repositories.EnergyConsumptionRollupRepository;
+import com.platform.device.repositories.HourlyEnergyConsumptionRepository;
+import com.platform.device.repositories.HourlyEnergyConsumptionUpsertRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HourlyConsumptionBufferTest {
+
+    private static final UUID DEVICE = UUID.randomUUID();
+    private static final LocalDateTime TEN = LocalDateTime.of(2024, 5, 1, 10, 0);
+    private static final LocalDateTime ELEVEN = TEN.plusHours(1);
+
+    @Mock
+    private HourlyEnergyConsumptionRepository hourlyEnergyConsumptionRepository;
+
+    @Mock
+    private HourlyEnergyConsumptionUpsertRepository upsertRepository;
+
+    @Mock
+    private EnergyConsumptionRollupRepository rollupRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private DailyConsumptionCache dailyConsumptionCache;
+
+    @InjectMocks
+    private HourlyConsumptionBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(buffer, "maxPendingMeasurements", 1000);
+        ReflectionTestUtils.setField(buffer, "deferWrites", true);
+        ReflectionTestUtils.setField(buffer, "idleEvictionMs", 600_000L);
+        when(hourlyEnergyConsumptionRepository.findByDeviceIdAndHourTimestamp(any(), any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void seedsALateHourFromThePersistedTotal() {
+        when(hourlyEnergyConsumptionRepository.findByDeviceIdAndHourTimestamp(DEVICE, TEN))
+                .thenReturn(Optional.of(row(TEN, 20)));
+
+        assertEquals(25.0, buffer.add(DEVICE, TEN, 5));
+    }
+
+    @Test
+    void seedsALateHourWithItsClosedWriteStillWaitingForTheFlush() {
+        when(hourlyEnergyConsumptionRepository.findByDeviceIdAndHourTimestamp(DEVICE, TEN))
+                .thenReturn(Optional.of(row(TEN, 20)));
+        buffer.add(DEVICE, TEN, 5);
+        // Rolls over to eleven: the 5 of ten waits for the applier's flush
+        buffer.add(DEVICE, ELEVEN, 1);
+
+        assertEquals(27.0, buffer.add(DEVICE, TEN, 2));
+        // The closed write and the late bucket are both still pending, each counted once
+        assertEquals(Map.of(TEN, 7.0, ELEVEN, 1.0), buffer.getPendingDeltas(DEVICE, TEN, ELEVEN));
+    }
+
+    private static HourlyEnergyConsumption row(LocalDateTime hour, double total) {
+        HourlyEnergyConsumption row = new HourlyEnergyConsumption();
+        row.setDeviceId(DEVICE);
+        row.setHourTimestamp(hour);
+        row.setTotalEnergyConsumption(total);
+        return row;
+    }
+}
@@ -0,0 +1,100 @@
+package com.platform.device.services;
+
+import com.platform.device.entities.IngestLogCheckpoint;
+import com.platform.device.repositories.IngestLogCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class IngestLogApplierTest {
+
+    private static final IngestLog.Position START = new IngestLog.Position(0, 0);
+    private static final IngestLog.Position CHECKPOINT = new IngestLog.Position(7, 10 * IngestLog.RECORD_SIZE);
+
+    @Mock
+    private IngestLog ingestLog;
+
+    @Mock
+    private HourlyEnergyConsumptionService hourlyEnergyConsumptionService;
+
+    @Mock
+    private HourlyConsumptionBuffer hourlyConsumptionBuffer;
+
+    @Mock
+    private IngestLogCheckpointRepository checkpointRepository;
+
+    @InjectMocks
+    private IngestLogApplier applier;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(applier, "batchSize", 100);
+        when(ingestLog.isEnabled()).thenReturn(true);
+        when(ingestLog.replicaId()).thenReturn("1");
+        when(ingestLog.logId()).thenReturn("current-log");
+        when(ingestLog.start()).thenReturn(START);
+        when(ingestLog.read(any(), anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void resumesFromTheCheckpointOfThisLog() {
+        checkpoint("current-log");
+        when(ingestLog.contains(CHECKPOINT)).thenReturn(true);
+
+        applier.apply();
+
+        verify(ingestLog).read(CHECKPOINT, 100);
+    }
+
+    @Test
+    void replaysFromTheStartWhenTheCheckpointBelongsToAnotherLog() {
+        checkpoint("wiped-log");
+        when(ingestLog.contains(CHECKPOINT)).thenReturn(true);
+
+        applier.apply();
+
+        verify(ingestLog).read(START, 100);
+    }
+
+    @Test
+    void replaysFromTheStartWhenTheCheckpointIsOutsideTheLog() {
+        checkpoint("current-log");
+        when(ingestLog.contains(CHECKPOINT)).thenReturn(false);
+
+        applier.apply();
+
+        verify(ingestLog).read(START, 100);
+    }
+
+    @Test
+    void trustsACheckpointWithoutLogIdOnlyForAnExistingLog() {
+        checkpoint(null);
+        when(ingestLog.contains(CHECKPOINT)).thenReturn(true);
+        when(ingestLog.isCreated()).thenReturn(true);
+
+        applier.apply();
+
+        verify(ingestLog).read(START, 100);
+    }
+
+    private void checkpoint(String logId) {
+        when(checkpointRepository.findById("1")).thenReturn(Optional.of(
+                new IngestLogCheckpoint("1", logId, CHECKPOINT.segment(), CHECKPOINT.offset())));
+    }
+}
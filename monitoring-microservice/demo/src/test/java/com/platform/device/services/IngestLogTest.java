@@ -0,0 +1,203 @@
+package com.platform.device.services;
+
+import com.platform.device.messaging.MeasurementBatch;
+import com.platform.device.messaging.MeasurementWireFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestLogTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackAppendedMeasurements() throws IOException {
+        IngestLog log = open(64);
+        log.append(batch(0, 3));
+
+        List<IngestLog.LoggedMeasurement> records = log.read(log.start(), 10);
+
+        assertEquals(3, records.size());
+        for (int i = 0; i < 3; i++) {
+            assertMeasurement(i, records.get(i));
+        }
+        assertEquals(new IngestLog.Position(0, 3 * IngestLog.RECORD_SIZE), records.get(2).next());
+        assertEquals(2, log.read(records.get(0).next(), 10).size());
+        assertEquals(1, log.read(log.start(), 1).size());
+    }
+
+    @Test
+    void rollsOverToNewSegmentsAndDeletesAppliedOnes() throws IOException {
+        IngestLog log = open(64);
+        log.append(batch(0, 3));
+        log.append(batch(3, 7));
+
+        List<IngestLog.LoggedMeasurement> records = log.read(log.start(), 100);
+        assertEquals(10, records.size());
+        for (int i = 0; i < 10; i++) {
+            assertMeasurement(i, records.get(i));
+        }
+        assertEquals(new IngestLog.Position(2, 2 * IngestLog.RECORD_SIZE), records.get(9).next());
+        assertEquals(3, segmentFiles().size());
+
+        log.deleteSegmentsBefore(2);
+        assertEquals(1, segmentFiles().size());
+        assertEquals(new IngestLog.Position(2, 0), log.start());
+        assertEquals(2, log.read(log.start(), 100).size());
+    }
+
+    @Test
+    void rejectsABatchThatDoesNotFitWithoutAppendingAnyOfIt() throws IOException {
+        IngestLog log = open(2);
+        log.append(batch(0, 3));
+
+        assertThrows(IOException.class, () -> log.append(batch(3, 6)));
+
+        assertEquals(3, log.read(log.start(), 100).size());
+        log.append(batch(3, 5));
+        assertEquals(8, log.read(log.start(), 100).size());
+    }
+
+    @Test
+    void reopenedLogKeepsItsRecordsAndAppendsAfterThem() throws IOException {
+        open(64).append(batch(0, 6));
+
+        IngestLog reopened = open(64);
+        reopened.append(batch(6, 1));
+
+        List<IngestLog.LoggedMeasurement> records = reopened.read(reopened.start(), 100);
+        assertEquals(7, records.size());
+        for (int i = 0; i < 7; i++) {
+            assertMeasurement(i, records.get(i));
+        }
+    }
+
+    @Test
+    void dropsEverythingFromTheFirstCorruptRecord() throws IOException {
+        IngestLog log = open(64);
+        log.append(batch(0, 4));
+        Path segment = segmentFiles().get(0);
+        // A torn write of the second record: part of its payload never reached the disk
+        overwrite(segment, IngestLog.RECORD_SIZE + 20, new byte[8]);
+
+        IngestLog reopened = open(64);
+        assertEquals(1, reopened.read(reopened.start(), 100).size());
+
+        // The valid records after the torn one are zeroed, not resurrected by the next scan
+        reopened.append(batch(100, 1));
+        IngestLog again = open(64);
+        List<IngestLog.LoggedMeasurement> records = again.read(again.start(), 100);
+        assertEquals(2, records.size());
+        assertMeasurement(0, records.get(0));
+        assertMeasurement(100, records.get(1));
+    }
+
+    @Test
+    void badChecksumEndsTheScan() throws IOException {
+        IngestLog log = open(64);
+        log.append(batch(0, 3));
+        Path segment = segmentFiles().get(0);
+        overwrite(segment, 3 * IngestLog.RECORD_SIZE - 4, new byte[]{1, 2, 3, 4});
+
+        IngestLog reopened = open(64);
+        assertEquals(2, reopened.read(reopened.start(), 100).size());
+    }
+
+    @Test
+    void keepsItsLogIdAcrossRestartsAndGetsANewOneWhenWiped() throws IOException {
+        IngestLog log = open(64);
+        assertTrue(log.isCreated());
+
+        IngestLog reopened = open(64);
+        assertEquals(log.logId(), reopened.logId());
+        assertFalse(reopened.isCreated());
+
+        try (Stream<Path> files = Files.list(directory.resolve("replica-1"))) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        IngestLog wiped = open(64);
+        assertNotEquals(log.logId(), wiped.logId());
+        assertTrue(wiped.isCreated());
+    }
+
+    @Test
+    void containsOnlyPositionsWithinItsRecords() throws IOException {
+        IngestLog log = open(64);
+        log.append(batch(0, 6));
+
+        assertTrue(log.contains(new IngestLog.Position(0, 0)));
+        assertTrue(log.contains(new IngestLog.Position(0, 4 * IngestLog.RECORD_SIZE)));
+        assertTrue(log.contains(new IngestLog.Position(1, 2 * IngestLog.RECORD_SIZE)));
+        assertFalse(log.contains(new IngestLog.Position(1, 3 * IngestLog.RECORD_SIZE)));
+        assertFalse(log.contains(new IngestLog.Position(1, 7)));
+        assertFalse(log.contains(new IngestLog.Position(5, 0)));
+    }
+
+    private IngestLog open(int maxSegments) throws IOException {
+        IngestLog log = new IngestLog();
+        ReflectionTestUtils.setField(log, "enabled", true);
+        ReflectionTestUtils.setField(log, "directory", directory.toString());
+        ReflectionTestUtils.setField(log, "replicaId", "1");
+        ReflectionTestUtils.setField(log, "segmentBytes", RECORDS_PER_SEGMENT * IngestLog.RECORD_SIZE);
+        ReflectionTestUtils.setField(log, "maxSegments", maxSegments);
+        ReflectionTestUtils.setField(log, "fsync", true);
+        log.init();
+        return log;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("replica-1"))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static void overwrite(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    private static MeasurementBatch batch(int first, int count) {
+        MeasurementBatch batch = new MeasurementBatch(count);
+        for (int i = first; i < first + count; i++) {
+            UUID deviceId = deviceId(i);
+            batch.add(deviceId.getMostSignificantBits(), deviceId.getLeastSignificantBits(),
+                    MeasurementWireFormat.toEpochMicros(START.plusSeconds(i)), i * 0.5);
+        }
+        return batch;
+    }
+
+    private static UUID deviceId(int i) {
+        return new UUID(0x1234L, i);
+    }
+
+    private static void assertMeasurement(int i, IngestLog.LoggedMeasurement record) {
+        assertEquals(deviceId(i), record.deviceId());
+        assertEquals(START.plusSeconds(i), record.timestamp());
+        assertEquals(i * 0.5, record.value());
+        assertTrue(record.next().offset() % IngestLog.RECORD_SIZE == 0);
+    }
+}
@@ -0,0 +1,223 @@
+package com.platform.device.services;
+
+import com.platform.device.config.RabbitMQConfig;
+import com.platform.device.entities.AlertThreshold;
+import com.platform.device.messaging.OverconsumptionNotificationMessage;
+import com.platform.device.repositories.AlertThresholdRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OverconsumptionDetectorTest {
+
+    private static final UUID DEVICE = UUID.randomUUID();
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    @Mock
+    private AlertThresholdRepository alertThresholdRepository;
+
+    @Mock
+    private DeviceRegistry deviceRegistry;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @InjectMocks
+    private OverconsumptionDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(detector, "defaultHourlyThreshold", 100.0);
+        ReflectionTestUtils.setField(detector, "defaultWindowThreshold", 0.0);
+        ReflectionTestUtils.setField(detector, "windowMinutes", 60L);
+        ReflectionTestUtils.setField(detector, "defaultRateThreshold", 0.0);
+        ReflectionTestUtils.setField(detector, "cooldownMinutes", 60L);
+        ReflectionTestUtils.setField(detector, "clearRatio", 0.9);
+    }
+
+    @Test
+    void alertsOnceWhenTheHourlyTotalIsExceeded() {
+        detector.evaluate(DEVICE, START, 10, 90);
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+        verify(rabbitTemplate, never()).convertAndSend(any(String.class), any(String.class), any(Object.class));
+
+        detector.evaluate(DEVICE, START.plusMinutes(1), 20, 110);
+        detector.evaluate(DEVICE, START.plusMinutes(2), 20, 130);
+
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(DEVICE));
+        List<OverconsumptionNotificationMessage> notifications = notifications(1);
+        assertEquals("ALERTING", notifications.get(0).getState());
+        assertEquals("hourly", notifications.get(0).getRule());
+        assertEquals(110.0, notifications.get(0).getCurrentConsumption());
+        assertEquals(100.0, notifications.get(0).getThreshold());
+    }
+
+    @Test
+    void clearsOnlyBelowTheClearRatio() {
+        detector.evaluate(DEVICE, START, 10, 110);
+        detector.evaluate(DEVICE, START.plusMinutes(1), 10, 95);
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(DEVICE));
+
+        detector.evaluate(DEVICE, START.plusMinutes(2), 10, 85);
+
+        assertEquals(OverconsumptionDetector.AlertState.COOLDOWN, detector.getState(DEVICE));
+        List<OverconsumptionNotificationMessage> notifications = notifications(2);
+        assertEquals("COOLDOWN", notifications.get(1).getState());
+        // The clearing notification reports the last breach
+        assertEquals(95.0, notifications.get(1).getCurrentConsumption());
+    }
+
+    @Test
+    void ignoresBreachesDuringTheCooldown() {
+        enterCooldown();
+
+        detector.evaluate(DEVICE, START.plusMinutes(30), 10, 150);
+
+        assertEquals(OverconsumptionDetector.AlertState.COOLDOWN, detector.getState(DEVICE));
+        notifications(2);
+    }
+
+    @Test
+    void alertsAgainOnABreachAfterTheCooldown() {
+        enterCooldown();
+
+        detector.evaluate(DEVICE, START.plusMinutes(62), 10, 150);
+
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(DEVICE));
+        assertEquals("ALERTING", notifications(3).get(2).getState());
+    }
+
+    @Test
+    void notifiesTheReturnToOkAfterTheCooldown() {
+        enterCooldown();
+
+        detector.evaluate(DEVICE, START.plusMinutes(62), 10, 50);
+        detector.evaluate(DEVICE, START.plusMinutes(63), 10, 50);
+
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+        assertEquals("OK", notifications(3).get(2).getState());
+    }
+
+    @Test
+    void evictsIdleAlertsOnlyOnceTheirCooldownHasPassed() {
+        UUID other = UUID.randomUUID();
+        ReflectionTestUtils.setField(detector, "idleEvictionMs", 0L);
+        detector.evaluate(DEVICE, START, 10, 50);
+        detector.evaluate(other, START, 10, 150);
+
+        detector.evictIdle();
+
+        Map<?, ?> alerts = (Map<?, ?>) ReflectionTestUtils.getField(detector, "alerts");
+        assertEquals(Set.of(other), alerts.keySet());
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(other));
+
+        // An evicted device starts over from OK
+        detector.evaluate(DEVICE, START.plusMinutes(1), 10, 150);
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(DEVICE));
+    }
+
+    @Test
+    void windowRuleSumsOnlyTheMeasurementsWithinTheWindow() {
+        ReflectionTestUtils.setField(detector, "defaultHourlyThreshold", 0.0);
+        ReflectionTestUtils.setField(detector, "defaultWindowThreshold", 50.0);
+
+        // 20 measurements of 2, one every 10 minutes: at most 6 of them (12) in the 60-minute window
+        for (int i = 0; i < 20; i++) {
+            detector.evaluate(DEVICE, START.plusMinutes(10L * i), 2, 0);
+        }
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+
+        detector.evaluate(DEVICE, START.plusMinutes(191), 40, 0);
+
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(DEVICE));
+        OverconsumptionNotificationMessage notification = notifications(1).get(0);
+        assertEquals("window", notification.getRule());
+        assertEquals(52.0, notification.getCurrentConsumption());
+    }
+
+    @Test
+    void rateRuleUsesTheIncreasePerMinute() {
+        ReflectionTestUtils.setField(detector, "defaultHourlyThreshold", 0.0);
+        ReflectionTestUtils.setField(detector, "defaultRateThreshold", 5.0);
+
+        detector.evaluate(DEVICE, START, 10, 0);
+        detector.evaluate(DEVICE, START.plusMinutes(2), 18, 0);
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+
+        // A late measurement gives no rate and does not replace the latest one
+        detector.evaluate(DEVICE, START.plusMinutes(1), 100, 0);
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+
+        detector.evaluate(DEVICE, START.plusSeconds(150), 24, 0);
+
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(DEVICE));
+        OverconsumptionNotificationMessage notification = notifications(1).get(0);
+        assertEquals("rate", notification.getRule());
+        assertEquals(12.0, notification.getCurrentConsumption());
+    }
+
+    @Test
+    void deviceThresholdsOverrideTypeThresholdsOverrideDefaults() {
+        UUID other = UUID.randomUUID();
+        AlertThreshold byDevice = new AlertThreshold(UUID.randomUUID(), DEVICE, null, 200.0, null, null);
+        AlertThreshold byType = new AlertThreshold(UUID.randomUUID(), null, "heater", 50.0, null, null);
+        when(alertThresholdRepository.findAll()).thenReturn(List.of(byDevice, byType));
+        when(deviceRegistry.getType(DEVICE)).thenReturn("heater");
+        when(deviceRegistry.getType(other)).thenReturn("heater");
+        detector.init();
+
+        detector.evaluate(DEVICE, START, 10, 150);
+        detector.evaluate(other, START, 10, 60);
+
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+        assertEquals(OverconsumptionDetector.AlertState.ALERTING, detector.getState(other));
+        assertEquals(50.0, notifications(1).get(0).getThreshold());
+    }
+
+    @Test
+    void zeroThresholdDisablesTheRule() {
+        AlertThreshold disabled = new AlertThreshold(UUID.randomUUID(), DEVICE, null, 0.0, null, null);
+        when(alertThresholdRepository.findAll()).thenReturn(List.of(disabled));
+        detector.init();
+
+        detector.evaluate(DEVICE, START, 10, 1_000_000);
+
+        assertEquals(OverconsumptionDetector.AlertState.OK, detector.getState(DEVICE));
+    }
+
+    private void enterCooldown() {
+        detector.evaluate(DEVICE, START, 10, 110);
+        detector.evaluate(DEVICE, START.plusMinutes(1), 10, 50);
+        assertEquals(OverconsumptionDetector.AlertState.COOLDOWN, detector.getState(DEVICE));
+    }
+
+    private List<OverconsumptionNotificationMessage> notifications(int expected) {
+        ArgumentCaptor<OverconsumptionNotificationMessage> captor = ArgumentCaptor.forClass(OverconsumptionNotificationMessage.class);
+        verify(rabbitTemplate, times(expected)).convertAndSend(
+                eq(RabbitMQConfig.OVERCONSUMPTION_NOTIFICATIONS_EXCHANGE),
+                eq(RabbitMQConfig.OVERCONSUMPTION_NOTIFICATION_ROUTING_KEY),
+                captor.capture());
+        return captor.getAllValues();
+    }
+}
@@ -0,0 +1,109 @@
+package com.platform.device.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowTinyLfuCacheTest {
+
+    @Test
+    void tracksWeightAcrossPutReplaceAndInvalidate() {
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(1000, 100, String::length);
+
+        cache.put("a", "12345");
+        cache.put("b", "123");
+        assertEquals(8, cache.weightedSize());
+
+        cache.put("a", "1");
+        assertEquals(4, cache.weightedSize());
+        assertEquals("1", cache.get("a"));
+
+        cache.invalidate("b");
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.weightedSize());
+
+        cache.invalidate("missing");
+        assertEquals(1, cache.weightedSize());
+    }
+
+    @Test
+    void neverExceedsTheMaximumWeight() {
+        WindowTinyLfuCache<Integer, String> cache = new WindowTinyLfuCache<>(100, 100, String::length);
+
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, "x".repeat(1 + i % 7));
+            if (i % 3 == 0) {
+                cache.get(i / 2);
+            }
+            assertTrue(cache.weightedSize() <= 100, "weighted size " + cache.weightedSize());
+        }
+    }
+
+    @Test
+    void doesNotCacheEntriesHeavierThanTheMainSpace() {
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(100, 100, String::length);
+
+        cache.put("small", "x");
+        cache.put("huge", "x".repeat(100));
+
+        assertNull(cache.get("huge"));
+        assertEquals("x", cache.get("small"));
+        assertEquals(1, cache.weightedSize());
+    }
+
+    @Test
+    void oversizedReplacementDropsThePreviousValue() {
+        WindowTinyLfuCache<String, String> cache = new WindowTinyLfuCache<>(100, 100, String::length);
+
+        cache.put("key", "x");
+        cache.put("key", "x".repeat(100));
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    void frequentEntriesSurviveAScanOfOneOffKeys() {
+        WindowTinyLfuCache<Integer, Integer> cache = new WindowTinyLfuCache<>(100, 4096, value -> 1);
+        for (int key = 0; key < 50; key++) {
+            cache.put(key, key);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int key = 0; key < 50; key++) {
+                cache.get(key);
+            }
+        }
+
+        for (int key = 1000; key < 6000; key++) {
+            cache.put(key, key);
+        }
+
+        for (int key = 0; key < 50; key++) {
+            assertNotNull(cache.get(key), "hot key " + key + " was evicted");
+        }
+    }
+
+    @Test
+    void rejectsWindowVictimsNoMoreFrequentThanTheMainEntries() {
+        WindowTinyLfuCache<Integer, Integer> cache = new WindowTinyLfuCache<>(10, 100, value -> 1);
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+        assertEquals(10, cache.weightedSize());
+
+        // 100 pushes 9 out of the one-entry window, 101 pushes 100; both were seen once, as often as the main entries
+        cache.put(100, 100);
+        cache.put(101, 101);
+
+        assertEquals(10, cache.weightedSize());
+        assertNull(cache.get(9));
+        assertNull(cache.get(100));
+        assertEquals(101, cache.get(101));
+        for (int key = 0; key < 9; key++) {
+            assertEquals(key, cache.get(key));
+        }
+    }
+}
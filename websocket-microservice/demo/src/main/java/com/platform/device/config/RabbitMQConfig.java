@@ -7,6 +7,7 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -38,6 +39,13 @@ public class RabbitMQConfig {
     public static final String OVERCONSUMPTION_NOTIFICATION_ROUTING_KEY = "overconsumption.notification";
     public static final String WEBSOCKET_OVERCONSUMPTION_QUEUE = "websocket.overconsumption.queue";
 
+    // Clustered mode: converted STOMP frames, routed by destination to the replicas with subscribers
+    public static final String WEBSOCKET_FANOUT_EXCHANGE = "websocket.fanout.exchange";
+    public static final String WEBSOCKET_REPLICA_QUEUE_PREFIX = "websocket.replica.";
+
+    @Value("${websocket.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
     @Bean
     public Queue monitoringUserQueue() {
         return QueueBuilder.durable(MONITORING_USER_QUEUE).build();
@@ -63,6 +71,17 @@ public class RabbitMQConfig {
         return QueueBuilder.durable(WEBSOCKET_OVERCONSUMPTION_QUEUE).build();
     }
 
+    /**
+     * Exclusive queue of this replica, deleted with its connection. Only bound to the routing
+     * keys of destinations its own sessions subscribed to, by {@link com.platform.device.services.ClusterFanout}.
+     */
+    @Bean
+    public Queue websocketReplicaQueue() {
+        Queue queue = new AnonymousQueue(new Base64UrlNamingStrategy(WEBSOCKET_REPLICA_QUEUE_PREFIX));
+        queue.setShouldDeclare(clusterEnabled);
+        return queue;
+    }
+
     @Bean
     public TopicExchange userEventsExchange() {
         return new TopicExchange(USER_EVENTS_EXCHANGE);
@@ -93,6 +112,11 @@ public class RabbitMQConfig {
         return new TopicExchange(OVERCONSUMPTION_NOTIFICATIONS_EXCHANGE);
     }
 
+    @Bean
+    public TopicExchange websocketFanoutExchange() {
+        return new TopicExchange(WEBSOCKET_FANOUT_EXCHANGE);
+    }
+
     @Bean
     public Binding monitoringUserCreateBinding() {
         return BindingBuilder
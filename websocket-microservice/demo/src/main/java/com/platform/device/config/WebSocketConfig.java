@@ -27,6 +27,13 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws/chat")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+
+        // Plain WebSocket endpoints, without the SockJS framing; Tomcat negotiates permessage-deflate if the client offers it
+        registry.addEndpoint("/ws/consumption-native")
+                .setAllowedOriginPatterns("*");
+
+        registry.addEndpoint("/ws/chat-native")
+                .setAllowedOriginPatterns("*");
     }
 }
 
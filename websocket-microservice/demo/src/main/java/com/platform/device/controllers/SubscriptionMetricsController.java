@@ -0,0 +1,35 @@
+package com.platform.device.controllers;
+
+import com.platform.device.dtos.SubscriptionMetricsDTO;
+import com.platform.device.services.SubscriptionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.Map;
+
+/**
+ * Live STOMP subscription metrics of this replica. Not routed by Traefik, meant to be
+ * scraped from inside the cluster.
+ */
+@Controller
+@RequestMapping("/subscriptions")
+public class SubscriptionMetricsController {
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @GetMapping("/metrics")
+    @ResponseBody
+    public ResponseEntity<SubscriptionMetricsDTO> getMetrics() {
+        Map<String, Integer> destinations = subscriptionRegistry.getSubscriberCounts();
+        int subscriptions = destinations.values().stream().mapToInt(Integer::intValue).sum();
+        return ResponseEntity.ok(new SubscriptionMetricsDTO(
+                subscriptionRegistry.getSessionCount(),
+                subscriptions,
+                destinations,
+                subscriptionRegistry.getDroppedEvents()));
+    }
+}
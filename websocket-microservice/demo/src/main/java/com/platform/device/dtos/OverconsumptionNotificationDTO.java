@@ -20,4 +20,7 @@ public class OverconsumptionNotificationDTO {
     private Double threshold;
     private LocalDateTime timestamp;
     private String message;
+    // ALERTING, COOLDOWN or OK, and the rule (hourly, window or rate) that decided it
+    private String state;
+    private String rule;
 }
@@ -0,0 +1,21 @@
+package com.platform.device.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SubscriptionMetricsDTO {
+    private int sessions;
+    private int subscriptions;
+    // Destination -> live subscriber count
+    private Map<String, Integer> destinations;
+    // Events dropped because nobody was subscribed to their destination
+    private long droppedEvents;
+}
@@ -19,4 +19,8 @@ public class OverconsumptionNotificationMessage {
     private Double currentConsumption;
     private Double threshold;
     private LocalDateTime timestamp;
+    // Alert state entered: ALERTING, COOLDOWN once the consumption is back under the threshold, OK once the cooldown ended
+    private String state;
+    // Rule that fired: hourly, window or rate
+    private String rule;
 }
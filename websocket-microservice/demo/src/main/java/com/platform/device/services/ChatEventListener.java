@@ -4,16 +4,19 @@ import com.platform.device.config.RabbitMQConfig;
 import com.platform.device.dtos.ChatWebSocketMessage;
 import com.platform.device.messaging.ChatEventMessage;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ChatEventListener {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private static final String ADMIN_TOPIC = "/topic/chat/admin";
 
-    public ChatEventListener(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    private final ClusterFanout clusterFanout;
+    private final SubscriptionRegistry subscriptionRegistry;
+
+    public ChatEventListener(ClusterFanout clusterFanout, SubscriptionRegistry subscriptionRegistry) {
+        this.clusterFanout = clusterFanout;
+        this.subscriptionRegistry = subscriptionRegistry;
     }
 
     @RabbitListener(queues = RabbitMQConfig.WEBSOCKET_CHAT_QUEUE)
@@ -23,6 +26,16 @@ public class ChatEventListener {
                 return;
             }
 
+            String userTopic = "/topic/chat/" + event.getUserId();
+            boolean toUser = clusterFanout.isDeliverable(userTopic);
+            // Also sent to the admin topic if sender is admin, user, or bot
+            boolean toAdmin = ("admin".equals(event.getSender()) || "user".equals(event.getSender()) || "bot".equals(event.getSender()))
+                    && clusterFanout.isDeliverable(ADMIN_TOPIC);
+            if (!toUser && !toAdmin) {
+                subscriptionRegistry.recordDropped();
+                return;
+            }
+
             // Convert to WebSocket message format
             ChatWebSocketMessage wsMessage = new ChatWebSocketMessage();
             wsMessage.setTicketId(event.getTicketId().toString());
@@ -32,13 +45,11 @@ public class ChatEventListener {
             wsMessage.setTimestamp(event.getTimestamp());
 
             // Send to user-specific topic: /topic/chat/{userId}
-            String userTopic = "/topic/chat/" + event.getUserId();
-            messagingTemplate.convertAndSend(userTopic, wsMessage);
-
-            // Also send to admin topic if sender is admin, user, or bot
-            if ("admin".equals(event.getSender()) || "user".equals(event.getSender()) || "bot".equals(event.getSender())) {
-                String adminTopic = "/topic/chat/admin";
-                messagingTemplate.convertAndSend(adminTopic, wsMessage);
+            if (toUser) {
+                clusterFanout.send(userTopic, wsMessage);
+            }
+            if (toAdmin) {
+                clusterFanout.send(ADMIN_TOPIC, wsMessage);
             }
         } catch (Exception e) {
             e.printStackTrace();
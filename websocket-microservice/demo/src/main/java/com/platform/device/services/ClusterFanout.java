@@ -0,0 +1,199 @@
+package com.platform.device.services;
+
+import com.platform.device.config.RabbitMQConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers events to STOMP destinations, on this replica or, in clustered mode, on every
+ * replica with a subscriber.
+ * <p>
+ * In clustered mode the replica that consumed an event converts it once and publishes the
+ * frame body to {@link RabbitMQConfig#WEBSOCKET_FANOUT_EXCHANGE}, with the destination as
+ * routing key ("/topic/chat/{userId}" becomes "chat.{userId}"). Each replica binds its
+ * exclusive queue only to the destinations its own sessions subscribed to, so an event
+ * reaches just the replicas that can deliver it, and RabbitMQ drops the rest. Bindings follow
+ * the {@link SubscriptionRegistry} in the background, so a subscription only starts receiving
+ * clustered events once its binding is in place.
+ */
+@Service
+public class ClusterFanout {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterFanout.class);
+
+    static final String DESTINATION_HEADER = "x-stomp-destination";
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private SubscriptionRegistry subscriptionRegistry;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    private Queue websocketReplicaQueue;
+
+    @Value("${websocket.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    // Destinations whose binding may not match their subscribers anymore
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // Touched only by syncBindings
+    private final Set<String> bound = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        if (!clusterEnabled) {
+            return;
+        }
+        subscriptionRegistry.addListener(dirty::add);
+        connectionFactory.addConnectionListener(connection -> {
+            // The exclusive queue went away with the previous connection, and its bindings with it
+            dirty.addAll(subscriptionRegistry.getSubscriberCounts().keySet());
+            dirty.addAll(bound);
+            bound.clear();
+        });
+        LOGGER.info("Clustered mode, fanning out through {} via {}",
+                RabbitMQConfig.WEBSOCKET_FANOUT_EXCHANGE, websocketReplicaQueue.getName());
+    }
+
+    /**
+     * Whether an event for the destination can reach anyone; in clustered mode only RabbitMQ
+     * knows, so always true.
+     */
+    public boolean isDeliverable(String destination) {
+        return clusterEnabled || subscriptionRegistry.hasSubscribers(destination);
+    }
+
+    public void send(String destination, Object payload) {
+        if (!clusterEnabled) {
+            if (subscriptionRegistry.hasSubscribers(destination)) {
+                messagingTemplate.convertAndSend(destination, payload);
+            } else {
+                subscriptionRegistry.recordDropped();
+            }
+            return;
+        }
+
+        String routingKey = routingKey(destination);
+        if (routingKey == null) {
+            LOGGER.warn("Destination {} cannot be fanned out, dropping the event", destination);
+            return;
+        }
+        // Converted as the STOMP broker would, so replicas forward the body as is
+        org.springframework.messaging.Message<?> converted =
+                messagingTemplate.getMessageConverter().toMessage(payload, new MessageHeaders(null));
+        if (converted == null || !(converted.getPayload() instanceof byte[] body)) {
+            LOGGER.warn("Cannot convert {} for {}, dropping the event", payload.getClass().getSimpleName(), destination);
+            return;
+        }
+        MessageProperties properties = new MessageProperties();
+        MimeType contentType = converted.getHeaders().get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        if (contentType != null) {
+            properties.setContentType(contentType.toString());
+        }
+        properties.setHeader(DESTINATION_HEADER, destination);
+        rabbitTemplate.send(RabbitMQConfig.WEBSOCKET_FANOUT_EXCHANGE, routingKey, new Message(body, properties));
+    }
+
+    @RabbitListener(queues = "#{rabbitMQConfig.websocketReplicaQueue().name}",
+            autoStartup = "${websocket.cluster.enabled:false}")
+    public void handleFanout(Message message) {
+        String destination = message.getMessageProperties().getHeader(DESTINATION_HEADER);
+        // A binding may outlive the last subscriber by one sync
+        if (destination == null || !subscriptionRegistry.hasSubscribers(destination)) {
+            subscriptionRegistry.recordDropped();
+            return;
+        }
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        String contentType = message.getMessageProperties().getContentType();
+        if (contentType != null) {
+            headers.setContentType(MimeType.valueOf(contentType));
+        }
+        headers.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(message.getBody(), headers.getMessageHeaders()));
+    }
+
+    /**
+     * Binds the replica queue to the destinations that gained their first local subscriber and
+     * unbinds those that lost their last one.
+     */
+    @Scheduled(fixedDelayString = "${websocket.cluster.bind-interval-ms:100}")
+    public void syncBindings() {
+        if (!clusterEnabled || dirty.isEmpty()) {
+            return;
+        }
+        for (String destination : dirty) {
+            dirty.remove(destination);
+            String routingKey = routingKey(destination);
+            if (routingKey == null) {
+                continue;
+            }
+            boolean wanted = subscriptionRegistry.hasSubscribers(destination);
+            try {
+                if (wanted && !bound.contains(destination)) {
+                    amqpAdmin.declareBinding(binding(routingKey));
+                    bound.add(destination);
+                    LOGGER.debug("Bound {} to {}", websocketReplicaQueue.getName(), routingKey);
+                } else if (!wanted && bound.contains(destination)) {
+                    amqpAdmin.removeBinding(binding(routingKey));
+                    bound.remove(destination);
+                    LOGGER.debug("Unbound {} from {}", websocketReplicaQueue.getName(), routingKey);
+                }
+            } catch (Exception e) {
+                dirty.add(destination);
+                LOGGER.warn("Failed to update the binding of {}, retrying: {}", destination, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private Binding binding(String routingKey) {
+        return new Binding(websocketReplicaQueue.getName(), Binding.DestinationType.QUEUE,
+                RabbitMQConfig.WEBSOCKET_FANOUT_EXCHANGE, routingKey, null);
+    }
+
+    /**
+     * Routing key of a /topic destination, or null for other destinations and patterns.
+     */
+    static String routingKey(String destination) {
+        if (!destination.startsWith(TOPIC_PREFIX) || destination.length() == TOPIC_PREFIX.length()) {
+            return null;
+        }
+        String path = destination.substring(TOPIC_PREFIX.length());
+        if (path.contains("*") || path.contains("#") || path.contains(".")) {
+            return null;
+        }
+        return path.replace('/', '.');
+    }
+}
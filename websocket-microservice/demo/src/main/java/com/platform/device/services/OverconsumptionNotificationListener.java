@@ -6,23 +6,33 @@ import com.platform.device.messaging.OverconsumptionNotificationMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
 public class OverconsumptionNotificationListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(OverconsumptionNotificationListener.class);
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterFanout clusterFanout;
+    private final SubscriptionRegistry subscriptionRegistry;
 
-    public OverconsumptionNotificationListener(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    public OverconsumptionNotificationListener(ClusterFanout clusterFanout, SubscriptionRegistry subscriptionRegistry) {
+        this.clusterFanout = clusterFanout;
+        this.subscriptionRegistry = subscriptionRegistry;
     }
 
     @RabbitListener(queues = RabbitMQConfig.WEBSOCKET_OVERCONSUMPTION_QUEUE)
     public void handleOverconsumptionNotification(OverconsumptionNotificationMessage notification) {
         LOGGER.info("Received overconsumption notification for device {}", notification.getDeviceId());
 
+        // Device-specific topic: /topic/notifications/device/{deviceId}
+        // All owners of this device will receive the notification
+        String deviceTopic = "/topic/notifications/device/" + notification.getDeviceId();
+        if (!clusterFanout.isDeliverable(deviceTopic)) {
+            subscriptionRegistry.recordDropped();
+            LOGGER.debug("No subscribers on {}, dropping the notification", deviceTopic);
+            return;
+        }
+
         // Convert to DTO format for WebSocket
         OverconsumptionNotificationDTO dto = new OverconsumptionNotificationDTO();
         dto.setDeviceId(notification.getDeviceId());
@@ -31,17 +41,36 @@ public class OverconsumptionNotificationListener {
         dto.setCurrentConsumption(notification.getCurrentConsumption());
         dto.setThreshold(notification.getThreshold());
         dto.setTimestamp(notification.getTimestamp());
-        dto.setMessage(String.format(
-            "Device '%s' has exceeded the energy consumption threshold! Current: %.2f kWh/h, Threshold: %.2f kWh/h",
-            notification.getDeviceName(),
-            notification.getCurrentConsumption(),
-            notification.getThreshold()
-        ));
-
-        // Send to device-specific topic: /topic/notifications/device/{deviceId}
-        // All owners of this device will receive the notification
-        String deviceTopic = "/topic/notifications/device/" + notification.getDeviceId();
-        messagingTemplate.convertAndSend(deviceTopic, dto);
+        dto.setState(notification.getState());
+        dto.setRule(notification.getRule());
+        if ("OK".equals(notification.getState())) {
+            dto.setMessage(String.format(
+                "Device '%s' energy consumption alert has cleared.",
+                notification.getDeviceName()
+            ));
+        } else if ("COOLDOWN".equals(notification.getState())) {
+            dto.setMessage(String.format(
+                "Device '%s' is back under its energy consumption threshold.",
+                notification.getDeviceName()
+            ));
+        } else if (notification.getRule() != null && !"hourly".equals(notification.getRule())) {
+            dto.setMessage(String.format(
+                "Device '%s' has exceeded its %s energy consumption threshold! Current: %.2f, Threshold: %.2f",
+                notification.getDeviceName(),
+                notification.getRule(),
+                notification.getCurrentConsumption(),
+                notification.getThreshold()
+            ));
+        } else {
+            dto.setMessage(String.format(
+                "Device '%s' has exceeded the energy consumption threshold! Current: %.2f kWh/h, Threshold: %.2f kWh/h",
+                notification.getDeviceName(),
+                notification.getCurrentConsumption(),
+                notification.getThreshold()
+            ));
+        }
+
+        clusterFanout.send(deviceTopic, dto);
         LOGGER.info("Sent overconsumption notification to WebSocket topic: {}", deviceTopic);
     }
 }
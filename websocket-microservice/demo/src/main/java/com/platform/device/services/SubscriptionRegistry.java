@@ -0,0 +1,121 @@
+package com.platform.device.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Live subscriber count of every destination, fed by the STOMP session events, so the
+ * listeners can drop events nobody would receive before converting them.
+ */
+@Service
+public class SubscriptionRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionRegistry.class);
+
+    // Session id -> subscription id -> destination
+    private final ConcurrentHashMap<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> subscribers = new ConcurrentHashMap<>();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    public boolean hasSubscribers(String destination) {
+        return subscribers.containsKey(destination);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Snapshot of the subscriber count of every destination with at least one subscriber.
+     */
+    public Map<String, Integer> getSubscriberCounts() {
+        return new TreeMap<>(subscribers);
+    }
+
+    /**
+     * Registers a callback run with the destination whenever its first subscriber arrives or
+     * its last one leaves. It runs on the thread handling the STOMP frame, and may see the
+     * count changed again already.
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Counts an event dropped because nobody was subscribed to its destination.
+     */
+    public void recordDropped() {
+        droppedEvents.increment();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = headers.getSessionId();
+        String subscriptionId = headers.getSubscriptionId();
+        String destination = headers.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            release(previous);
+        }
+        if (subscribers.merge(destination, 1, Integer::sum) == 1) {
+            notifyListeners(destination);
+        }
+        LOGGER.debug("Session {} subscribed to {}", sessionId, destination);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        if (headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        Map<String, String> subscriptions = sessions.get(headers.getSessionId());
+        String destination = subscriptions != null ? subscriptions.remove(headers.getSubscriptionId()) : null;
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(String destination) {
+        if (subscribers.computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null) == null) {
+            notifyListeners(destination);
+        }
+    }
+
+    private void notifyListeners(String destination) {
+        for (Consumer<String> listener : listeners) {
+            listener.accept(destination);
+        }
+    }
+}